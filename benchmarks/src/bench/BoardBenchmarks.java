@@ -0,0 +1,122 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.Board;
+import game.Geometry;
+
+/**
+ * Operações de {@code game.Board} usadas a cada mensagem do servidor, em posições de abertura,
+ * meio de jogo e congestionadas (ver {@link Positions}) de cada geometria. Cada operação percorre
+ * todas as peças (ou casas) do jogador 1, por isso o resultado é por posição, não por peça.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class BoardBenchmarks {
+    private static final int PLAYER = 1;
+
+    @Param({ "10x10", "16x16", "16x16-4" })
+    public String geometry;
+
+    @Param({ "opening", "midgame", "crowded" })
+    public String position;
+
+    private Board board;
+    private int[] pieces;
+    private int pieceCount;
+    private final int[] buffer = new int[Board.MAX_MOVES];
+    // Lances simples legais de cada peça, para movePiece (aplicado e desfeito a cada operação).
+    private int[] legalFrom;
+    private int[] legalTo;
+    private int legalCount;
+
+    @Setup
+    public void setUp() {
+        Geometry chosen = Geometry.byId(geometry);
+        switch (position) {
+            case "opening": board = Positions.opening(chosen); break;
+            case "midgame": board = Positions.midGame(chosen); break;
+            case "crowded": board = Positions.crowded(chosen); break;
+            default: throw new IllegalArgumentException("Posição desconhecida: " + position);
+        }
+        pieces = new int[board.getCellCount()];
+        pieceCount = board.piecesOf(PLAYER, pieces);
+        legalFrom = new int[pieceCount * Board.MAX_MOVES];
+        legalTo = new int[legalFrom.length];
+        legalCount = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            int count = board.generateMoves(pieces[p], false, buffer);
+            for (int i = 0; i < count; i++) {
+                legalFrom[legalCount] = pieces[p];
+                legalTo[legalCount++] = buffer[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public long getValidMoves() {
+        long total = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            total += board.getValidMoves(board.rowOf(pieces[p]), board.colOf(pieces[p]), false).length;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long generateMoves() {
+        long total = 0;
+        for (int p = 0; p < pieceCount; p++) total += board.generateMoves(pieces[p], false, buffer);
+        return total;
+    }
+
+    @Benchmark
+    public long movePieceAndUndo() {
+        long total = 0;
+        for (int i = 0; i < legalCount; i++) {
+            int from = legalFrom[i];
+            int to = legalTo[i];
+            if (board.movePiece(board.rowOf(from), board.colOf(from), board.rowOf(to), board.colOf(to), PLAYER, false)) {
+                total++;
+                board.performMove(to, from);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long canJumpFrom() {
+        long total = 0;
+        int size = board.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.canJumpFrom(row, col)) total++;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long checkForWinner() {
+        long total = 0;
+        for (int p = 1; p <= board.getGeometry().getPlayerCount(); p++) {
+            if (board.checkForWinner(p)) total++;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import shared.BinaryCodec;
+
+/** Codificação das mensagens mais frequentes: linha de texto UTF-8 contra trama de {@link BinaryCodec}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class CodecBenchmarks {
+    private final String[] messages = { "OPPONENT_MOVED:4:0:5:0", "SET_TURN:YOUR_TURN", "UPDATE_SCORE:12:11",
+            "VALID_MOVES_LIST:5,0;5,1;4,2;6,0;6,2", "CHAT_MESSAGE:Ana: boa jogada!" };
+    private byte[][] frames;
+    private final String[] decoded = new String[1];
+
+    @Setup
+    public void setUp() {
+        frames = new byte[messages.length][];
+        for (int i = 0; i < messages.length; i++) frames[i] = BinaryCodec.encode(messages[i]);
+    }
+
+    @Benchmark
+    public long textEncode() {
+        long total = 0;
+        for (String message : messages) total += (message + "\n").getBytes(StandardCharsets.UTF_8).length;
+        return total;
+    }
+
+    @Benchmark
+    public long binaryEncode() {
+        long total = 0;
+        for (String message : messages) total += BinaryCodec.encode(message).length;
+        return total;
+    }
+
+    @Benchmark
+    public long binaryDecode() {
+        long total = 0;
+        for (byte[] frame : frames) total += BinaryCodec.tryDecode(frame, 0, frame.length, BinaryCodec.MAX_FRAME, decoded);
+        return total;
+    }
+}
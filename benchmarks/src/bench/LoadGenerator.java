@@ -0,0 +1,558 @@
+package bench;
+
+import game.Board;
+import game.Geometry;
+import shared.BinaryCodec;
+import shared.Protocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Gerador de carga ao nível do socket: abre muitas ligações TCP a um {@code HalmaServer} já em
+ * execução e, em cada uma, um jogador sintético sem Swing joga partidas legais falando o
+ * {@code shared.Protocol} (SET_NAME, GET_VALID_MOVES, MOVE, saltos em cadeia, END_CHAIN_JUMP,
+ * CHAT e FORFEIT). Cada jogador mantém o seu {@code game.Board} como o bot do servidor e escolhe
+ * os lances com a mesma política gulosa/aleatória de {@link Playouts}. No fim imprime ligações
+ * aceites/s, partidas/s e os percentis p50/p99/p999 do tempo de ida e volta de cada comando.
+ *
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar server.ServerLauncher --bot-wait-seconds=0 &amp;
+ *   java -Dload.connections=2000 -Dload.seconds=60 -cp benchmarks/target/benchmarks.jar bench.LoadGenerator
+ * </pre>
+ * Parâmetros (propriedades de sistema):
+ * <ul>
+ *   <li>{@code load.host}, {@code load.port} — servidor (padrão localhost:12345)</li>
+ *   <li>{@code load.connections} — jogadores simultâneos (padrão 200)</li>
+ *   <li>{@code load.seconds} — duração da medição (padrão 30)</li>
+ *   <li>{@code load.rampMillis} — intervalo em que as ligações iniciais são abertas (padrão 2000)</li>
+ *   <li>{@code load.mode} — id da geometria (padrão 10x10)</li>
+ *   <li>{@code load.codec} — {@code binary} (padrão) ou {@code text}</li>
+ *   <li>{@code load.validMovesPercent} — turnos em que se pede GET_VALID_MOVES antes do MOVE (padrão 50)</li>
+ *   <li>{@code load.chatPercent} — turnos com uma mensagem de CHAT (padrão 5)</li>
+ *   <li>{@code load.forfeitPercent} — partidas abandonadas a meio com FORFEIT (padrão 2)</li>
+ *   <li>{@code load.maxTurns} — turnos de cada jogador antes de desistir (padrão 300)</li>
+ *   <li>{@code load.timeoutSeconds} — espera máxima por uma mensagem do servidor (padrão 30)</li>
+ *   <li>{@code load.seed} — semente (padrão fixo, para repetir uma execução)</li>
+ * </ul>
+ * O servidor deve correr com o bot desligado ({@code --bot-wait-seconds=0}) para os jogadores
+ * serem pareados entre si. O processo sai com estado 1 se o servidor recusar algum lance que o
+ * tabuleiro local considera legal, ou se as listas de GET_VALID_MOVES divergirem dele.
+ */
+public final class LoadGenerator {
+    private static final String HOST = System.getProperty("load.host", "localhost");
+    private static final int PORT = Integer.getInteger("load.port", 12345);
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 200);
+    private static final long SECONDS = Long.getLong("load.seconds", 30);
+    private static final long RAMP_MILLIS = Long.getLong("load.rampMillis", 2000);
+    private static final Geometry GEOMETRY = Geometry.byId(System.getProperty("load.mode", Geometry.CLASSIC.getId()));
+    private static final boolean BINARY = !"text".equals(System.getProperty("load.codec"));
+    private static final int VALID_MOVES_PERCENT = Integer.getInteger("load.validMovesPercent", 50);
+    private static final int CHAT_PERCENT = Integer.getInteger("load.chatPercent", 5);
+    private static final int FORFEIT_PERCENT = Integer.getInteger("load.forfeitPercent", 2);
+    private static final int MAX_TURNS = Integer.getInteger("load.maxTurns", 300);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("load.timeoutSeconds", 30) * 1000;
+    private static final long SEED = Long.getLong("load.seed", 0x4A1_3A_0002L);
+    // Depois do fim da medição, quanto tempo as partidas em curso têm para terminar.
+    private static final long DRAIN_MILLIS = 5000;
+    private static final long REPORT_MILLIS = 5000;
+
+    // Comandos medidos, pela ordem do relatório; cada um tem o seu histograma.
+    private static final String CONNECT = "connect";
+    private static final String PAIRING = "SET_NAME -> GAME_START";
+    private static final Map<String, Latency> latencies = new LinkedHashMap<>();
+
+    static {
+        for (String command : new String[] { CONNECT, Protocol.SET_NAME, PAIRING, Protocol.GET_VALID_MOVES, Protocol.MOVE,
+                Protocol.END_CHAIN_JUMP, Protocol.CHAT, Protocol.FORFEIT }) {
+            latencies.put(command, new Latency());
+        }
+    }
+
+    private static final AtomicLong accepted = new AtomicLong();
+    private static final AtomicLong games = new AtomicLong();
+    private static final AtomicLong moves = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong divergences = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+    private static final AtomicLong chatsLimited = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+    private static final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+
+    private static volatile boolean measuring = true;
+    private static volatile boolean stopping = false;
+
+    private LoadGenerator() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        if (GEOMETRY == null) throw new IllegalArgumentException("Geometria desconhecida: " + System.getProperty("load.mode"));
+        System.out.println("Servidor: " + HOST + ":" + PORT + ", ligações: " + CONNECTIONS + ", duração: " + SECONDS
+                + " s, tabuleiro: " + GEOMETRY.getId() + ", codec: " + (BINARY ? BinaryCodec.NAME : "text"));
+
+        Executor executor = createExecutor();
+        CountDownLatch done = new CountDownLatch(CONNECTIONS);
+        SplittableRandom seeds = new SplittableRandom(SEED);
+        long start = System.nanoTime();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            Player player = new Player(i, seeds.split(), RAMP_MILLIS * i / CONNECTIONS);
+            executor.execute(() -> {
+                try {
+                    player.run();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long deadline = start + SECONDS * 1_000_000_000L;
+        long lastAccepted = 0;
+        long lastGames = 0;
+        long lastReport = start;
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(Math.min(REPORT_MILLIS, Math.max(1, (deadline - System.nanoTime()) / 1_000_000)));
+            long now = System.nanoTime();
+            double interval = (now - lastReport) / 1e9;
+            long acceptedNow = accepted.get();
+            long gamesNow = games.get();
+            System.out.println(String.format(Locale.ROOT, "[%5.1f s] ligações/s %8.1f   partidas/s %8.1f   abertas %6d",
+                    (now - start) / 1e9, (acceptedNow - lastAccepted) / interval, (gamesNow - lastGames) / interval,
+                    openSockets.size()));
+            lastAccepted = acceptedNow;
+            lastGames = gamesNow;
+            lastReport = now;
+        }
+        measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long acceptedTotal = accepted.get();
+        long gamesTotal = games.get();
+        long movesTotal = moves.get();
+
+        // As partidas em curso desistem no próximo turno; o que sobrar é fechado à força.
+        stopping = true;
+        done.await(DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+        for (Socket socket : openSockets) closeQuietly(socket);
+        done.await(DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+
+        System.out.println(String.format(Locale.ROOT, "Tempo:              %.2f s", seconds));
+        System.out.println(String.format(Locale.ROOT, "Ligações aceites/s: %.1f (%d)", acceptedTotal / seconds, acceptedTotal));
+        System.out.println(String.format(Locale.ROOT, "Partidas/s:         %.1f (%d)", gamesTotal / seconds, gamesTotal));
+        System.out.println(String.format(Locale.ROOT, "Movimentos/s:       %.1f", movesTotal / seconds));
+        System.out.println("Lances recusados:   " + rejected.get());
+        System.out.println("Divergências:       " + divergences.get());
+        System.out.println("Tempos esgotados:   " + timeouts.get());
+        System.out.println("Conversa limitada:  " + chatsLimited.get());
+        System.out.println("Erros de ligação:   " + failures.get());
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-24s %10s %10s %10s %10s %10s", "comando (ms)", "n", "p50", "p99", "p999", "máx"));
+        for (Map.Entry<String, Latency> entry : latencies.entrySet()) {
+            Latency latency = entry.getValue();
+            if (latency.count() == 0) continue;
+            System.out.println(String.format(Locale.ROOT, "%-24s %10d %10.3f %10.3f %10.3f %10.3f", entry.getKey(), latency.count(),
+                    latency.percentileMillis(0.50), latency.percentileMillis(0.99), latency.percentileMillis(0.999),
+                    latency.percentileMillis(1.0)));
+        }
+        System.exit(rejected.get() > 0 || divergences.get() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Uma thread por jogador. As threads virtuais (Java 21+) são obtidas por reflexão, como no
+     * modo "virtual" do servidor, para milhares de ligações não custarem milhares de pilhas.
+     */
+    private static Executor createExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return runnable -> {
+                Thread thread = new Thread(null, runnable, "load-player", 256 * 1024);
+                thread.setDaemon(true);
+                thread.start();
+            };
+        }
+    }
+
+    private static void record(String command, long startNanos) {
+        if (measuring) latencies.get(command).record(System.nanoTime() - startNanos);
+    }
+
+    private static void count(AtomicLong counter) {
+        if (measuring) counter.incrementAndGet();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // já fechado
+        }
+    }
+
+    /**
+     * Histograma de latências com baldes log-lineares em microssegundos (16 por potência de dois,
+     * erro relativo até ~6%), seguro para várias threads e sem alocação por registo.
+     */
+    static final class Latency {
+        private static final int LINEAR = 32;
+        private static final int SUB_BUCKETS = 16;
+        private final AtomicLongArray counts = new AtomicLongArray(LINEAR + 60 * SUB_BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucketOf(Math.max(0, nanos / 1000)));
+            total.incrementAndGet();
+        }
+
+        long count() {
+            return total.get();
+        }
+
+        /** Limite superior do balde onde cai o quantil {@code q}, em milissegundos. */
+        double percentileMillis(double q) {
+            long target = Math.max(1, (long) Math.ceil(q * total.get()));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) return upperBound(i) / 1000.0;
+            }
+            return 0;
+        }
+
+        static int bucketOf(long micros) {
+            if (micros < LINEAR) return (int) micros;
+            int shift = 63 - Long.numberOfLeadingZeros(micros) - 4;
+            return LINEAR + (shift - 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < LINEAR) return bucket;
+            int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+            long mantissa = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+            return ((mantissa + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * Um jogador sintético: liga-se, joga uma partida, desliga-se e volta a ligar-se até ao fim da
+     * medição. Cada comando é enviado e a resposta esperada de forma síncrona; o que chegar entretanto
+     * (lances do adversário, placar, PING) é tratado pelo caminho.
+     */
+    private static final class Player implements Runnable {
+        private final String name;
+        private final SplittableRandom random;
+        private final long startDelayMillis;
+
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        private boolean binary;
+
+        private Board board;
+        private int playerId;
+        private boolean gameOver;
+        private long setNameSentAt;
+        private int turnsPlayed;
+        private int forfeitTurn;
+        private int[] pieces;
+        private int[] candidateFrom;
+        private int[] candidateTo;
+
+        Player(int index, SplittableRandom random, long startDelayMillis) {
+            this.name = "load" + index;
+            this.random = random;
+            this.startDelayMillis = startDelayMillis;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(startDelayMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            while (!stopping) {
+                try {
+                    playGame();
+                } catch (SocketTimeoutException e) {
+                    count(timeouts);
+                } catch (IOException | RuntimeException e) {
+                    if (!stopping) count(failures);
+                } finally {
+                    if (socket != null) {
+                        openSockets.remove(socket);
+                        closeQuietly(socket);
+                    }
+                }
+            }
+        }
+
+        private void playGame() throws IOException {
+            board = new Board(GEOMETRY);
+            playerId = 0;
+            gameOver = false;
+            turnsPlayed = 0;
+            forfeitTurn = random.nextInt(100) < FORFEIT_PERCENT ? 1 + random.nextInt(Math.max(1, MAX_TURNS / 2)) : MAX_TURNS;
+            binary = false;
+
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            openSockets.add(socket);
+            long connectStart = System.nanoTime();
+            socket.connect(new InetSocketAddress(HOST, PORT), TIMEOUT_MILLIS);
+            record(CONNECT, connectStart);
+            count(accepted);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream());
+
+            setNameSentAt = System.nanoTime();
+            send(Protocol.SET_NAME + Protocol.SEPARATOR + name + Protocol.SEPARATOR + Protocol.OPTION_MODE + "=" + GEOMETRY.getId()
+                    + (BINARY ? Protocol.SEPARATOR + Protocol.OPTION_CODEC + "=" + BinaryCodec.NAME : ""));
+            // A primeira resposta a um SET_NAME é sempre um INFO ("Aguardando oponente...") ou, com codec, o CODEC.
+            String reply = await(Protocol.INFO, Protocol.CODEC);
+            if (reply != null) record(Protocol.SET_NAME, setNameSentAt);
+
+            while (!gameOver) {
+                String message = read();
+                if (message == null) return;
+                if (message.equals(Protocol.SET_TURN + Protocol.SEPARATOR + "YOUR_TURN")) playTurn();
+            }
+        }
+
+        /** Lê a próxima mensagem e aplica o que ela muda no estado local; null no fim do fluxo. */
+        private String read() throws IOException {
+            String message = binary ? BinaryCodec.readFrame(in) : BinaryCodec.readTextLine(in);
+            if (message == null) {
+                gameOver = true;
+                return null;
+            }
+            int separator = message.indexOf(Protocol.SEPARATOR);
+            String command = separator < 0 ? message : message.substring(0, separator);
+            String data = separator < 0 ? "" : message.substring(separator + 1);
+            switch (command) {
+                case Protocol.CODEC:
+                    binary = BinaryCodec.NAME.equals(data);
+                    break;
+                case Protocol.PING:
+                    send(Protocol.PONG);
+                    break;
+                case Protocol.WELCOME:
+                    playerId = Integer.parseInt(data);
+                    break;
+                case Protocol.BOARD_SETUP:
+                    Geometry geometry = Geometry.byId(data);
+                    if (geometry != null) board = new Board(geometry);
+                    break;
+                case Protocol.GAME_START:
+                    record(PAIRING, setNameSentAt);
+                    break;
+                case Protocol.VALID_MOVE:
+                case Protocol.JUMP_MOVE:
+                case Protocol.OPPONENT_MOVED:
+                    String[] coords = data.split(Protocol.SEPARATOR);
+                    board.performMove(Integer.parseInt(coords[0]), Integer.parseInt(coords[1]),
+                            Integer.parseInt(coords[2]), Integer.parseInt(coords[3]));
+                    break;
+                case Protocol.VICTORY:
+                case Protocol.DEFEAT:
+                case Protocol.OPPONENT_FORFEIT:
+                    // Cada partida é contada uma vez, pelo jogador 1.
+                    if (!gameOver && playerId == 1) count(games);
+                    gameOver = true;
+                    break;
+            }
+            return message;
+        }
+
+        /**
+         * Lê até chegar uma mensagem de um dos comandos pedidos ou um ERROR, e devolve-a. Devolve null
+         * se a partida acabar antes disso.
+         */
+        private String await(String... commands) throws IOException {
+            while (true) {
+                String message = read();
+                if (message == null) return null;
+                if (message.startsWith(Protocol.ERROR + Protocol.SEPARATOR)) return message;
+                for (String command : commands) {
+                    if (matches(message, command)) return message;
+                }
+                if (gameOver) return null;
+            }
+        }
+
+        /**
+         * A mensagem é do comando pedido? VALID_MOVE não pode apanhar VALID_MOVES_LIST, por isso o
+         * comando tem de acabar num separador; um prefixo com dados (o CHAT) é comparado tal como está.
+         */
+        private static boolean matches(String message, String command) {
+            if (!message.startsWith(command)) return false;
+            return message.length() == command.length() || command.contains(Protocol.SEPARATOR)
+                    || message.startsWith(Protocol.SEPARATOR, command.length());
+        }
+
+        private void send(String message) throws IOException {
+            if (binary) {
+                BinaryCodec.writeFrame(out, message);
+            } else {
+                out.write((message + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+        }
+
+        /** Um turno: talvez um CHAT, talvez um GET_VALID_MOVES, o MOVE e a cadeia de saltos que se seguir. */
+        private void playTurn() throws IOException {
+            if (stopping || ++turnsPlayed > forfeitTurn) {
+                long start = System.nanoTime();
+                send(Protocol.FORFEIT);
+                if (await(Protocol.DEFEAT) != null || gameOver) record(Protocol.FORFEIT, start);
+                return;
+            }
+            if (random.nextInt(100) < CHAT_PERCENT) {
+                long start = System.nanoTime();
+                send(Protocol.CHAT + Protocol.SEPARATOR + "turno " + turnsPlayed);
+                // Uma mensagem recusada pelo limite de conversa volta como INFO em vez do eco.
+                String reply = await(Protocol.CHAT_MESSAGE + Protocol.SEPARATOR + name + ": ", Protocol.INFO);
+                if (reply == null) return;
+                if (reply.startsWith(Protocol.CHAT_MESSAGE)) record(Protocol.CHAT, start);
+                else count(chatsLimited);
+            }
+
+            boolean greedy = random.nextInt(10) != 0;
+            int count = collectCandidates(false, -1);
+            if (count == 0) {
+                send(Protocol.FORFEIT);
+                await(Protocol.DEFEAT);
+                return;
+            }
+            int choice = choose(count, greedy);
+            int from = candidateFrom[choice];
+            int to = candidateTo[choice];
+
+            if (random.nextInt(100) < VALID_MOVES_PERCENT && !checkValidMoves(from, to)) return;
+
+            while (true) {
+                long start = System.nanoTime();
+                send(Protocol.MOVE + Protocol.SEPARATOR + board.rowOf(from) + Protocol.SEPARATOR + board.colOf(from)
+                        + Protocol.SEPARATOR + board.rowOf(to) + Protocol.SEPARATOR + board.colOf(to));
+                String reply = await(Protocol.VALID_MOVE, Protocol.JUMP_MOVE);
+                if (reply == null) return;
+                if (reply.startsWith(Protocol.ERROR)) {
+                    resign(reply);
+                    return;
+                }
+                record(Protocol.MOVE, start);
+                count(moves);
+                if (reply.startsWith(Protocol.VALID_MOVE)) return;
+
+                // JUMP_MOVE: o servidor oferece a continuação da cadeia a partir de "to".
+                if (await(Protocol.CHAIN_JUMP_OFFER) == null) return;
+                count = collectCandidates(true, to);
+                int next = count > 0 ? choose(count, greedy) : -1;
+                boolean keepJumping = next >= 0 && (greedy
+                        ? board.distanceToTarget(playerId, to) > board.distanceToTarget(playerId, candidateTo[next])
+                        : random.nextInt(4) != 0);
+                if (!keepJumping) {
+                    start = System.nanoTime();
+                    send(Protocol.END_CHAIN_JUMP);
+                    if (await(Protocol.SET_TURN) != null || gameOver) record(Protocol.END_CHAIN_JUMP, start);
+                    return;
+                }
+                from = to;
+                to = candidateTo[next];
+            }
+        }
+
+        /**
+         * Pede ao servidor os destinos da peça em {@code from} e confirma que coincidem com os do
+         * tabuleiro local. Devolve false se o turno não puder continuar.
+         */
+        private boolean checkValidMoves(int from, int to) throws IOException {
+            long start = System.nanoTime();
+            send(Protocol.GET_VALID_MOVES + Protocol.SEPARATOR + board.rowOf(from) + Protocol.SEPARATOR + board.colOf(from));
+            String reply = await(Protocol.VALID_MOVES_LIST);
+            if (reply == null) return false;
+            if (reply.startsWith(Protocol.ERROR)) {
+                resign(reply);
+                return false;
+            }
+            record(Protocol.GET_VALID_MOVES, start);
+            String list = reply.substring(Protocol.VALID_MOVES_LIST.length() + 1);
+            int[] local = board.getValidMoves(board.rowOf(from), board.colOf(from), false);
+            int listed = list.isEmpty() ? 0 : list.split(";").length;
+            String wanted = board.rowOf(to) + "," + board.colOf(to);
+            boolean found = (";" + list + ";").contains(";" + wanted + ";");
+            if (listed != local.length || !found) count(divergences);
+            return true;
+        }
+
+        /** O servidor recusou um lance legal para o tabuleiro local: desiste para não ficar dessincronizado. */
+        private void resign(String error) throws IOException {
+            count(rejected);
+            if (rejected.get() <= 10) System.err.println("RECUSADO (" + name + "): " + error);
+            send(Protocol.FORFEIT);
+            await(Protocol.DEFEAT);
+        }
+
+        /** Lances candidatos: todos os do jogador, ou só os saltos a partir de {@code chainCell}. */
+        private int collectCandidates(boolean inChain, int chainCell) {
+            int cells = board.getCellCount();
+            if (pieces == null || pieces.length != cells) {
+                pieces = new int[cells];
+                candidateFrom = new int[board.getGeometry().getCampSize() * Board.MAX_MOVES];
+                candidateTo = new int[candidateFrom.length];
+            }
+            int pieceCount;
+            if (inChain) {
+                pieces[0] = chainCell;
+                pieceCount = 1;
+            } else {
+                pieceCount = board.piecesOf(playerId, pieces);
+            }
+            int count = 0;
+            for (int p = 0; p < pieceCount; p++) {
+                int from = pieces[p];
+                for (int to : board.getValidMoves(board.rowOf(from), board.colOf(from), inChain)) {
+                    candidateFrom[count] = from;
+                    candidateTo[count++] = to;
+                }
+            }
+            return count;
+        }
+
+        /** Ao acaso, ou o lance que mais avança (empates ao acaso), como em {@link Playouts}. */
+        private int choose(int count, boolean greedy) {
+            if (!greedy) return random.nextInt(count);
+            int best = -1;
+            int bestGain = Integer.MIN_VALUE;
+            int ties = 0;
+            for (int i = 0; i < count; i++) {
+                int gain = board.distanceToTarget(playerId, candidateFrom[i]) - board.distanceToTarget(playerId, candidateTo[i]);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    best = i;
+                    ties = 1;
+                } else if (gain == bestGain && random.nextInt(++ties) == 0) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+}
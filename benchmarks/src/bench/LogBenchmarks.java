@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import shared.Log;
+
+/** Custo de um registo TRACE desligado, o caso de cada mensagem do protocolo em produção. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class LogBenchmarks {
+    private Log log;
+    private final String player = "Ana";
+    private final String message = "OPPONENT_MOVED:4:0:5:0";
+
+    @Setup
+    public void setUp() {
+        log = Log.get("bench.disabled");
+        Log.setLevel("bench.disabled", Log.Level.INFO);
+    }
+
+    @Benchmark
+    public void disabledTrace() {
+        log.trace("SERVER -> ", player, ": ", message);
+    }
+}
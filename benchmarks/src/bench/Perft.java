@@ -0,0 +1,84 @@
+package bench;
+
+import game.Board;
+import game.Geometry;
+
+/**
+ * Contagem da árvore completa de lances ("perft") até uma profundidade fixa.
+ *
+ * Um lance é um turno inteiro: um passo para uma casa vizinha ou uma cadeia de saltos até
+ * qualquer casa alcançável (a mesma definição usada pela busca do bot). Os totais servem de
+ * referência: uma alteração em {@code game} que mude a contagem mudou as regras.
+ *
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar bench.Perft
+ * </pre>
+ * {@code bench.perft.depth} (padrão 3) define a profundidade; o tempo é medido por {@link PerftBenchmarks}.
+ */
+final class Perft {
+    private static final int DEPTH = Integer.getInteger("bench.perft.depth", 3);
+
+    private Perft() {}
+
+    public static void main(String[] args) {
+        for (Geometry geometry : new Geometry[] { Geometry.CLASSIC, Geometry.HALMA_16 }) {
+            System.out.printf("perft %-8s depth %d: %d leaves%n", geometry.getId(), DEPTH, count(new Board(geometry), 1, DEPTH));
+        }
+    }
+
+    static int from(int move) { return move >>> 16; }
+    static int to(int move) { return move & 0xFFFF; }
+
+    /** Escreve em {@code out} os lances completos de {@code player} e devolve quantos são. */
+    static int generateTurns(Board board, int player, int[] out) {
+        int[] pieces = new int[board.getCellCount()];
+        int[] targets = new int[board.getCellCount()];
+        return generateTurns(board, player, out, pieces, targets);
+    }
+
+    private static int generateTurns(Board board, int player, int[] out, int[] pieces, int[] targets) {
+        int pieceCount = board.piecesOf(player, pieces);
+        int count = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            int from = pieces[p];
+            int immediate = board.generateMoves(from, false, targets);
+            for (int i = 0; i < immediate; i++) {
+                if (isAdjacent(board, from, targets[i])) out[count++] = (from << 16) | targets[i];
+            }
+            int jumps = board.jumpDestinations(from, targets);
+            for (int i = 0; i < jumps; i++) {
+                if (!isAdjacent(board, from, targets[i])) out[count++] = (from << 16) | targets[i];
+            }
+        }
+        return count;
+    }
+
+    /** Número de folhas da árvore de lances de profundidade {@code depth} a partir de {@code board}. */
+    static long count(Board board, int player, int depth) {
+        int cells = board.getCellCount();
+        int maxMoves = board.getGeometry().getCampSize() * cells;
+        int[][] moves = new int[depth][maxMoves];
+        return count(board, player, depth, 0, moves, new int[cells], new int[cells]);
+    }
+
+    private static long count(Board board, int player, int depth, int ply, int[][] moves, int[] pieces, int[] targets) {
+        if (depth == 0) return 1;
+        int[] list = moves[ply];
+        int count = generateTurns(board, player, list, pieces, targets);
+        if (depth == 1) return count;
+
+        int next = board.getGeometry().nextPlayer(player);
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            board.performMove(from(move), to(move));
+            leaves += count(board, next, depth - 1, ply + 1, moves, pieces, targets);
+            board.performMove(to(move), from(move));
+        }
+        return leaves;
+    }
+
+    private static boolean isAdjacent(Board board, int from, int to) {
+        return Math.abs(board.rowOf(from) - board.rowOf(to)) <= 1 && Math.abs(board.colOf(from) - board.colOf(to)) <= 1;
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.Board;
+import game.Geometry;
+
+/**
+ * Tempo de um perft completo a partir da posição inicial. As contagens de folhas, que dizem se
+ * as regras mudaram, são impressas por {@link Perft#main}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class PerftBenchmarks {
+    @Param({ "10x10", "16x16" })
+    public String geometry;
+
+    @Param({ "3" })
+    public int depth;
+
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        board = new Board(Geometry.byId(geometry));
+    }
+
+    @Benchmark
+    public long perft() {
+        return Perft.count(board, 1, depth);
+    }
+}
@@ -0,0 +1,276 @@
+package bench;
+
+import game.Board;
+import game.Geometry;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Partidas completas de autojogo só com {@code game.Board}, sem sockets nem Swing, para medir
+ * o débito de ponta a ponta do motor de regras. Usa a mesma API que o servidor usa
+ * ({@code getValidMoves}, {@code movePiece}, {@code canJumpFrom}) e, a cada lance, verifica
+ * que as três concordam entre si; qualquer divergência é contada e as primeiras são impressas.
+ *
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar bench.Playouts
+ * </pre>
+ * Parâmetros (propriedades de sistema):
+ * <ul>
+ *   <li>{@code playout.games} — número de partidas (padrão 100000)</li>
+ *   <li>{@code playout.threads} — threads de trabalho (padrão: todos os núcleos)</li>
+ *   <li>{@code playout.policy} — {@code random}, {@code greedy} ou {@code mixed} (padrão)</li>
+ *   <li>{@code playout.mode} — id da geometria (padrão 10x10)</li>
+ *   <li>{@code playout.maxTurns} — turnos por partida antes de a dar como empatada (padrão 600)</li>
+ *   <li>{@code playout.check} — {@code false} desliga as verificações cruzadas</li>
+ *   <li>{@code playout.seed} — semente (padrão fixo, para repetir uma execução)</li>
+ * </ul>
+ */
+public final class Playouts {
+    private static final int GAMES = Integer.getInteger("playout.games", 100_000);
+    private static final int THREADS = Integer.getInteger("playout.threads", Runtime.getRuntime().availableProcessors());
+    private static final String POLICY = System.getProperty("playout.policy", "mixed");
+    private static final Geometry GEOMETRY = Geometry.byId(System.getProperty("playout.mode", Geometry.CLASSIC.getId()));
+    private static final int MAX_TURNS = Integer.getInteger("playout.maxTurns", 600);
+    private static final boolean CHECK = !"false".equals(System.getProperty("playout.check"));
+    private static final long SEED = Long.getLong("playout.seed", 0x4A1_3A_0001L);
+    private static final int MAX_REPORTED_VIOLATIONS = 10;
+
+    private Playouts() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        if (GEOMETRY == null) throw new IllegalArgumentException("Geometria desconhecida: " + System.getProperty("playout.mode"));
+        System.out.println("Partidas: " + GAMES + ", threads: " + THREADS + ", política: " + POLICY
+                + ", tabuleiro: " + GEOMETRY.getId() + ", verificações: " + CHECK);
+
+        AtomicInteger nextGame = new AtomicInteger();
+        SplittableRandom seeds = new SplittableRandom(SEED);
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) workers.add(new Worker(seeds.split(), nextGame));
+
+        long start = System.nanoTime();
+        for (Worker worker : workers) worker.start();
+        for (Worker worker : workers) worker.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Worker total = new Worker(null, null);
+        for (Worker worker : workers) total.add(worker);
+        long games = total.games;
+
+        System.out.println(String.format(Locale.ROOT, "Tempo:              %.2f s", seconds));
+        System.out.println(String.format(Locale.ROOT, "Partidas/s:         %.0f", games / seconds));
+        System.out.println(String.format(Locale.ROOT, "Movimentos/s:       %.0f", total.moves / seconds));
+        System.out.println(String.format(Locale.ROOT, "Turnos por partida: %.1f", (double) total.turns / Math.max(1, games)));
+        System.out.println(String.format(Locale.ROOT, "Partidas decididas: %d de %d", total.decided, games));
+        if (total.allocatedBytes >= 0) {
+            System.out.println(String.format(Locale.ROOT, "Alocação:           %.1f MB/s, %.1f bytes/movimento",
+                    total.allocatedBytes / seconds / (1 << 20), (double) total.allocatedBytes / Math.max(1, total.moves)));
+        } else {
+            System.out.println("Alocação:           indisponível nesta JVM");
+        }
+        System.out.println("Divergências:       " + total.violations);
+        if (total.violations > 0) System.exit(1);
+    }
+
+    /** Medição de bytes alocados pela thread atual, ou -1 se a JVM não a suportar. */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static final class Worker extends Thread {
+        private final SplittableRandom random;
+        private final AtomicInteger nextGame;
+
+        long games;
+        long moves;
+        long turns;
+        long decided;
+        long violations;
+        long allocatedBytes;
+
+        // Lances candidatos do turno atual (origem, destino); o tamanho cobre todas as peças de um jogador.
+        private int[] candidateFrom;
+        private int[] candidateTo;
+
+        Worker(SplittableRandom random, AtomicInteger nextGame) {
+            this.random = random;
+            this.nextGame = nextGame;
+        }
+
+        void add(Worker other) {
+            games += other.games;
+            moves += other.moves;
+            turns += other.turns;
+            decided += other.decided;
+            violations += other.violations;
+            allocatedBytes = allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+        }
+
+        @Override
+        public void run() {
+            int capacity = GEOMETRY.getCampSize() * Board.MAX_MOVES;
+            candidateFrom = new int[capacity];
+            candidateTo = new int[capacity];
+            long allocatedAtStart = allocatedBytes();
+            while (nextGame.getAndIncrement() < GAMES) {
+                playGame();
+                games++;
+            }
+            long allocatedAtEnd = allocatedBytes();
+            allocatedBytes = allocatedAtStart < 0 ? -1 : allocatedAtEnd - allocatedAtStart;
+        }
+
+        private void playGame() {
+            Board board = new Board(GEOMETRY);
+            int[] pieces = new int[board.getCellCount()];
+            boolean greedy = "greedy".equals(POLICY) || ("mixed".equals(POLICY) && random.nextBoolean());
+            int player = 1;
+            for (int turn = 0; turn < MAX_TURNS; turn++) {
+                turns++;
+                playTurn(board, player, pieces, greedy);
+                if (board.checkForWinner(player)) {
+                    decided++;
+                    return;
+                }
+                player = GEOMETRY.nextPlayer(player);
+            }
+        }
+
+        /** Um turno: um passo ou um salto, seguido de saltos em cadeia enquanto a política quiser continuar. */
+        private void playTurn(Board board, int player, int[] pieces, boolean greedy) {
+            int pieceCount = board.piecesOf(player, pieces);
+            int count = 0;
+            for (int p = 0; p < pieceCount; p++) {
+                int from = pieces[p];
+                int[] destinations = board.getValidMoves(board.rowOf(from), board.colOf(from), false);
+                if (CHECK) crossCheck(board, player, from, destinations, false);
+                for (int to : destinations) {
+                    candidateFrom[count] = from;
+                    candidateTo[count++] = to;
+                }
+            }
+            if (count == 0) return;
+
+            int choice = choose(board, player, count, greedy);
+            int from = candidateFrom[choice];
+            int to = candidateTo[choice];
+            boolean inChain = false;
+            while (true) {
+                apply(board, player, from, to, inChain);
+                boolean wasJump = !isAdjacent(board, from, to);
+                if (!wasJump || !board.canJumpFrom(board.rowOf(to), board.colOf(to))) return;
+
+                // Cadeia de saltos: a peça só pode continuar a saltar.
+                int[] jumps = board.getValidMoves(board.rowOf(to), board.colOf(to), true);
+                if (CHECK) crossCheck(board, player, to, jumps, true);
+                count = 0;
+                for (int next : jumps) {
+                    candidateFrom[count] = to;
+                    candidateTo[count++] = next;
+                }
+                choice = choose(board, player, count, greedy);
+                int gain = board.distanceToTarget(player, to) - board.distanceToTarget(player, candidateTo[choice]);
+                boolean keepJumping = greedy ? gain > 0 : random.nextInt(4) != 0;
+                if (!keepJumping) return;
+                from = to;
+                to = candidateTo[choice];
+                inChain = true;
+            }
+        }
+
+        /** Escolhe um candidato: ao acaso, ou o que mais avança (empates decididos ao acaso). */
+        private int choose(Board board, int player, int count, boolean greedy) {
+            if (!greedy) return random.nextInt(count);
+            int best = -1;
+            int bestGain = Integer.MIN_VALUE;
+            int ties = 0;
+            for (int i = 0; i < count; i++) {
+                int gain = board.distanceToTarget(player, candidateFrom[i]) - board.distanceToTarget(player, candidateTo[i]);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    best = i;
+                    ties = 1;
+                } else if (gain == bestGain && random.nextInt(++ties) == 0) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        private void apply(Board board, int player, int from, int to, boolean inChain) {
+            if (!board.movePiece(board.rowOf(from), board.colOf(from), board.rowOf(to), board.colOf(to), player, inChain)) {
+                report("movePiece recusou um destino de getValidMoves: " + describe(board, from) + " -> " + describe(board, to));
+            }
+            moves++;
+        }
+
+        /**
+         * Verifica que, para a peça em {@code from}: os destinos de getValidMoves são exatamente as
+         * casas da vizinhança de raio 2 que isLegalMove (a regra aplicada por movePiece) aceita; que
+         * movePiece recusa um destino fora da lista sem alterar o tabuleiro; e que canJumpFrom
+         * concorda com a existência de saltos.
+         */
+        private void crossCheck(Board board, int player, int from, int[] destinations, boolean inChain) {
+            int size = board.getSize();
+            int row = board.rowOf(from);
+            int col = board.colOf(from);
+            int listedJumps = 0;
+            for (int to : destinations) {
+                if (!board.isLegalMove(from, to, player, inChain)) {
+                    report("getValidMoves listou um destino ilegal: " + describe(board, from) + " -> " + describe(board, to));
+                }
+                if (!isAdjacent(board, from, to)) listedJumps++;
+            }
+
+            int legalInWindow = 0;
+            int rejected = -1;
+            for (int r = Math.max(0, row - 2); r <= Math.min(size - 1, row + 2); r++) {
+                for (int c = Math.max(0, col - 2); c <= Math.min(size - 1, col + 2); c++) {
+                    int to = board.index(r, c);
+                    if (board.isLegalMove(from, to, player, inChain)) legalInWindow++;
+                    else if (to != from) rejected = to;
+                }
+            }
+            if (legalInWindow != destinations.length) {
+                report("getValidMoves e isLegalMove discordam em " + describe(board, from)
+                        + ": " + destinations.length + " vs " + legalInWindow);
+            }
+
+            if (rejected >= 0) {
+                long hash = board.hash();
+                if (board.movePiece(row, col, board.rowOf(rejected), board.colOf(rejected), player, inChain) || board.hash() != hash) {
+                    report("movePiece aceitou um destino ilegal: " + describe(board, from) + " -> " + describe(board, rejected));
+                }
+            }
+
+            boolean canJump = board.canJumpFrom(row, col);
+            int jumps = inChain ? destinations.length : listedJumps;
+            if (canJump != (jumps > 0)) {
+                report("canJumpFrom(" + describe(board, from) + ") = " + canJump + ", mas getValidMoves tem " + jumps + " saltos");
+            }
+        }
+
+        private void report(String message) {
+            if (violations++ < MAX_REPORTED_VIOLATIONS) System.err.println("DIVERGÊNCIA: " + message);
+        }
+
+        private static String describe(Board board, int cell) {
+            return "(" + board.rowOf(cell) + "," + board.colOf(cell) + ")";
+        }
+
+        private static boolean isAdjacent(Board board, int from, int to) {
+            return Math.abs(board.rowOf(from) - board.rowOf(to)) <= 1 && Math.abs(board.colOf(from) - board.colOf(to)) <= 1;
+        }
+    }
+}
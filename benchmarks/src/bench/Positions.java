@@ -0,0 +1,58 @@
+package bench;
+
+import game.Board;
+import game.Geometry;
+
+import java.util.SplittableRandom;
+
+/**
+ * Posições representativas para os benchmarks, geradas de forma determinística
+ * (semente fixa) a partir da posição inicial.
+ */
+final class Positions {
+    private Positions() {}
+
+    /** Posição inicial: todas as peças nos acampamentos, poucos saltos possíveis. */
+    static Board opening(Geometry geometry) {
+        return new Board(geometry);
+    }
+
+    /** Meio de jogo: lances variados, peças já espalhadas pelo tabuleiro. */
+    static Board midGame(Geometry geometry) {
+        return play(geometry, 12 * geometry.getPlayerCount(), 0.5, 0x5EED_0001L);
+    }
+
+    /** Posição congestionada: os exércitos encontram-se no centro e há muitas cadeias de saltos. */
+    static Board crowded(Geometry geometry) {
+        return play(geometry, 10 * geometry.getPlayerCount(), 0.9, 0x5EED_0002L);
+    }
+
+    /**
+     * Joga {@code turns} turnos a partir da posição inicial. Em cada turno escolhe, com
+     * probabilidade {@code greed}, o lance completo que mais avança; senão, um lance ao acaso.
+     */
+    private static Board play(Geometry geometry, int turns, double greed, long seed) {
+        Board board = new Board(geometry);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] moves = new int[geometry.getCampSize() * board.getCellCount()];
+        int player = 1;
+        for (int turn = 0; turn < turns; turn++) {
+            int count = Perft.generateTurns(board, player, moves);
+            if (count == 0) break;
+            int chosen = moves[random.nextInt(count)];
+            if (random.nextDouble() < greed) {
+                int bestGain = Integer.MIN_VALUE;
+                for (int i = 0; i < count; i++) {
+                    int gain = board.distanceToTarget(player, Perft.from(moves[i])) - board.distanceToTarget(player, Perft.to(moves[i]));
+                    if (gain > bestGain) {
+                        bestGain = gain;
+                        chosen = moves[i];
+                    }
+                }
+            }
+            board.performMove(Perft.from(chosen), Perft.to(chosen));
+            player = geometry.nextPlayer(player);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.Geometry;
+import server.ClientHandler;
+import server.GameSession;
+
+/**
+ * Análise e resposta de mensagens em {@code server.GameSession}, sem rede: os jogadores são
+ * handlers que só contam o que recebem. Sem shards ({@code halma.server.sessionThreads=0}),
+ * processMessage trata a mensagem na própria thread, por isso mede-se só o tratamento.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Dhalma.server.sessionThreads=0", "-Dhalma.log.level=WARN" })
+public class SessionBenchmarks {
+    private NullClientHandler first;
+    private GameSession session;
+
+    @Setup
+    public void setUp() {
+        first = new NullClientHandler();
+        session = new GameSession(Geometry.CLASSIC, first, new NullClientHandler());
+    }
+
+    @Benchmark
+    public long getValidMoves() {
+        session.processMessage("GET_VALID_MOVES:4:0", first);
+        return first.received;
+    }
+
+    @Benchmark
+    public long rejectedMove() {
+        session.processMessage("MOVE:0:0:9:9", first);
+        return first.received;
+    }
+
+    /** Jogador sem ligação: conta as mensagens recebidas e descarta-as. */
+    private static final class NullClientHandler extends ClientHandler {
+        long received;
+
+        @Override
+        public void sendMessage(String message) {
+            received += message.length();
+        }
+    }
+}
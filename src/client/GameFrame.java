@@ -1,6 +1,7 @@
 package client;
 
 import game.Board;
+import game.Geometry;
 import game.Piece;
 import javax.swing.*;
 import java.awt.*;
@@ -18,7 +19,7 @@ public class GameFrame extends JFrame {
     private final JTextArea chatArea;
     private final JTextField chatInput;
     private final JLabel statusLabel;
-    private final Board board;
+    private Board board;
     private int selectedRow = -1;
     private int selectedCol = -1;
     private int playerId;
@@ -26,10 +27,14 @@ public class GameFrame extends JFrame {
     private String playerName = "Jogador";
     private String opponentName = "Oponente";
 
-    private JLabel player1ScoreLabel;
-    private JLabel player2ScoreLabel;
+    private final JPanel scorePanel;
+    private JLabel[] scoreLabels = new JLabel[0];
+    private int[] lastScores = new int[2];
 
     private List<Point> validMoves = new ArrayList<>();
+    // Destinos alcançáveis só com saltos em cadeia, enviados de uma vez com MOVE_PATH.
+    private List<Point> chainTargets = new ArrayList<>();
+    private int[] pathBuffer;
 
     public String getPlayerName() {
         return this.playerName;
@@ -38,6 +43,7 @@ public class GameFrame extends JFrame {
     public GameFrame(HalmaClient client) {
         this.client = client;
         this.board = new Board();
+        this.pathBuffer = new int[board.getCellCount()];
         setTitle("Halma Game");
 
         // --- INÍCIO DA MODIFICAÇÃO ---
@@ -79,14 +85,9 @@ public class GameFrame extends JFrame {
 
         eastPanel.add(Box.createRigidArea(new Dimension(0, 10)));
 
-        JPanel scorePanel = new JPanel(new GridLayout(2, 1, 0, 5));
+        scorePanel = new JPanel(new GridLayout(0, 1, 0, 5));
         scorePanel.setBorder(BorderFactory.createTitledBorder("Placar de Movimentos"));
-        player1ScoreLabel = new JLabel(playerName + ": 0");
-        player2ScoreLabel = new JLabel(opponentName + ": 0");
-        player1ScoreLabel.setFont(new Font("Arial", Font.PLAIN, 12));
-        player2ScoreLabel.setFont(new Font("Arial", Font.PLAIN, 12));
-        scorePanel.add(player1ScoreLabel);
-        scorePanel.add(player2ScoreLabel);
+        rebuildScoreLabels();
         eastPanel.add(scorePanel);
         
         eastPanel.add(Box.createRigidArea(new Dimension(0, 10)));
@@ -124,18 +125,73 @@ public class GameFrame extends JFrame {
         setLocationRelativeTo(null);
     }
 
-    public void updateScores(int p1Moves, int p2Moves) {
-        if (playerId == 1) {
-            player1ScoreLabel.setText("Você (" + playerName + "): " + p1Moves);
-            player2ScoreLabel.setText("Oponente (" + opponentName + "): " + p2Moves);
-        } else {
-            player1ScoreLabel.setText("Oponente (" + opponentName + "): " + p1Moves);
-            player2ScoreLabel.setText("Você (" + playerName + "): " + p2Moves);
+    public void updateScores(int[] moves) {
+        this.lastScores = moves;
+        for (int i = 0; i < scoreLabels.length && i < moves.length; i++) {
+            String label;
+            if (i + 1 == playerId) label = "Você (" + playerName + ")";
+            else if (scoreLabels.length == 2) label = "Oponente (" + opponentName + ")";
+            else label = "Jogador " + (i + 1);
+            scoreLabels[i].setText(label + ": " + moves[i]);
+        }
+    }
+
+    private void rebuildScoreLabels() {
+        scorePanel.removeAll();
+        scoreLabels = new JLabel[board.getGeometry().getPlayerCount()];
+        for (int i = 0; i < scoreLabels.length; i++) {
+            scoreLabels[i] = new JLabel("Jogador " + (i + 1) + ": 0");
+            scoreLabels[i].setFont(new Font("Arial", Font.PLAIN, 12));
+            scorePanel.add(scoreLabels[i]);
         }
+        scorePanel.revalidate();
+    }
+
+    /**
+     * Troca o tabuleiro local pela geometria anunciada pelo servidor (BOARD_SETUP).
+     */
+    public void setGeometry(Geometry geometry) {
+        this.board = new Board(geometry);
+        this.pathBuffer = new int[board.getCellCount()];
+        this.lastScores = new int[geometry.getPlayerCount()];
+        rebuildScoreLabels();
+        updateScores(lastScores);
+        boardPanel.repaint();
+    }
+
+    /**
+     * Repõe o estado da partida a partir do SNAPSHOT recebido ao retomar: peças, placar, vez e,
+     * se a cadeia de saltos da nossa vez estava a meio, volta a oferecer a continuação.
+     */
+    public void applySnapshot(int[] owners, int currentPlayer, int chainCell, int[] moves) {
+        if (owners.length != board.getCellCount()) return;
+        board.loadOwners(owners);
+        this.selectedRow = -1;
+        this.selectedCol = -1;
+        validMoves.clear();
+        chainTargets.clear();
+        updateScores(moves);
+        setMyTurn(currentPlayer == playerId);
+        boardPanel.repaint();
+        if (myTurn && chainCell >= 0) {
+            updateBoardAfterJumpAndPrompt(board.rowOf(chainCell), board.colOf(chainCell));
+        }
+    }
+
+    public int getPlayerCount() {
+        return board.getGeometry().getPlayerCount();
     }
 
     public void showValidMoves(List<Point> moves) {
         this.validMoves = moves;
+        this.chainTargets = new ArrayList<>();
+        if (selectedRow != -1) {
+            int count = board.jumpDestinations(board.index(selectedRow, selectedCol), pathBuffer);
+            for (int i = 0; i < count; i++) {
+                Point target = new Point(board.rowOf(pathBuffer[i]), board.colOf(pathBuffer[i]));
+                if (!moves.contains(target)) chainTargets.add(target);
+            }
+        }
         boardPanel.repaint();
     }
 
@@ -146,7 +202,7 @@ public class GameFrame extends JFrame {
     
     public void setOpponentName(String name) { 
         this.opponentName = name;
-        updateScores(0, 0); 
+        updateScores(lastScores); 
     }
 
     public void setMyTurn(boolean myTurn) {
@@ -154,6 +210,7 @@ public class GameFrame extends JFrame {
         updateStatus(myTurn ? "Seu turno, " + playerName + "." : "Turno de " + opponentName + ".");
         if (!myTurn) {
             validMoves.clear();
+            chainTargets.clear();
             boardPanel.repaint();
         }
     }
@@ -170,6 +227,7 @@ public class GameFrame extends JFrame {
             this.selectedRow = -1;
             this.selectedCol = -1;
             validMoves.clear();
+            chainTargets.clear();
         }
         boardPanel.repaint();
     }
@@ -186,6 +244,7 @@ public class GameFrame extends JFrame {
         this.selectedRow = -1;
         this.selectedCol = -1;
         validMoves.clear(); 
+        chainTargets.clear();
         boardPanel.repaint();
     }
 
@@ -194,6 +253,7 @@ public class GameFrame extends JFrame {
         this.selectedRow = endRow;
         this.selectedCol = endCol;
         validMoves.clear(); 
+        chainTargets.clear();
         boardPanel.repaint();
     }
 
@@ -207,6 +267,10 @@ public class GameFrame extends JFrame {
 
     public void closeApplication() { dispose(); }
 
+    // Cores das peças por jogador (1 e 2 mantêm o branco e o preto originais).
+    private static final Color[] PRIMARY_COLORS = { Color.WHITE, Color.BLACK, new Color(200, 40, 40), new Color(40, 90, 200) };
+    private static final Color[] SECONDARY_COLORS = { Color.LIGHT_GRAY, new Color(50, 50, 50), new Color(120, 20, 20), new Color(20, 50, 120) };
+
     private class BoardPanel extends JPanel {
         private static final int MARGIN = 30;
 
@@ -219,8 +283,8 @@ public class GameFrame extends JFrame {
 
                     int boardWidth = getWidth() - MARGIN * 2;
                     int boardHeight = getHeight() - MARGIN * 2;
-                    int cellWidth = boardWidth / Board.SIZE;
-                    int cellHeight = boardHeight / Board.SIZE;
+                    int cellWidth = boardWidth / board.getSize();
+                    int cellHeight = boardHeight / board.getSize();
 
                     int mouseX = e.getX() - MARGIN;
                     int mouseY = e.getY() - MARGIN;
@@ -231,6 +295,7 @@ public class GameFrame extends JFrame {
 
                     int col = mouseX / cellWidth;
                     int row = mouseY / cellHeight;
+                    if (!board.isValidCoordinate(row, col)) return;
                     
                     Piece clickedPiece = board.getPieceAt(row, col);
 
@@ -242,12 +307,22 @@ public class GameFrame extends JFrame {
                         }
                     } else { 
                         boolean isValidTarget = validMoves.stream().anyMatch(p -> p.x == row && p.y == col);
+                        boolean isChainTarget = chainTargets.stream().anyMatch(p -> p.x == row && p.y == col);
+                        int pathLength = isChainTarget
+                                ? board.findJumpPath(board.index(selectedRow, selectedCol), board.index(row, col), pathBuffer) : 0;
                         if (isValidTarget) {
                             client.sendMove(selectedRow, selectedCol, row, col);
+                        } else if (pathLength > 0) {
+                            List<Point> path = new ArrayList<>();
+                            for (int i = 0; i < pathLength; i++) {
+                                path.add(new Point(board.rowOf(pathBuffer[i]), board.colOf(pathBuffer[i])));
+                            }
+                            client.sendMovePath(path);
                         } else {
                             selectedRow = -1;
                             selectedCol = -1;
                             validMoves.clear();
+                            chainTargets.clear();
                         }
                     }
                     repaint();
@@ -265,16 +340,16 @@ public class GameFrame extends JFrame {
             int panelHeight = getHeight();
             int boardWidth = panelWidth - MARGIN * 2;
             int boardHeight = panelHeight - MARGIN * 2;
-            int cellWidth = boardWidth / Board.SIZE;
-            int cellHeight = boardHeight / Board.SIZE;
+            int size = board.getSize();
+            int cellWidth = boardWidth / size;
+            int cellHeight = boardHeight / size;
 
             // --- CORREÇÃO APLICADA AQUI ---
             g2d.setFont(new Font("Arial", Font.BOLD, 14));
             g2d.setColor(Color.BLACK); // Alterado de WHITE para BLACK
             
-            String[] cols = {"A", "B", "C", "D", "E", "F", "G", "H", "I", "J"};
-            for (int i = 0; i < Board.SIZE; i++) {
-                String letter = cols[i];
+            for (int i = 0; i < size; i++) {
+                String letter = String.valueOf((char) ('A' + i));
                 FontMetrics fm = g2d.getFontMetrics();
                 int letterWidth = fm.stringWidth(letter);
                 int x = MARGIN + i * cellWidth + (cellWidth - letterWidth) / 2;
@@ -290,8 +365,8 @@ public class GameFrame extends JFrame {
                                           MARGIN + boardWidth, MARGIN + boardHeight, new Color(139, 69, 19)));
             g2d.fillRect(MARGIN, MARGIN, boardWidth, boardHeight);
 
-            for (int row = 0; row < Board.SIZE; row++) {
-                for (int col = 0; col < Board.SIZE; col++) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
                     int x = MARGIN + col * cellWidth;
                     int y = MARGIN + row * cellHeight;
                     int margin_piece = cellWidth / 10;
@@ -304,9 +379,8 @@ public class GameFrame extends JFrame {
 
                     Piece piece = board.getPieceAt(row, col);
                     if (piece != null) {
-                        boolean isPlayer1 = piece.getPlayerId() == 1; //
-                        Color primaryColor = isPlayer1 ? Color.WHITE : Color.BLACK;
-                        Color secondaryColor = isPlayer1 ? Color.LIGHT_GRAY : new Color(50, 50, 50);
+                        Color primaryColor = PRIMARY_COLORS[piece.getPlayerId() - 1];
+                        Color secondaryColor = SECONDARY_COLORS[piece.getPlayerId() - 1];
                         
                         Point2D gradientCenter = new Point2D.Float(x + margin_piece + diameter / 3f, y + margin_piece + diameter / 3f);
                         g2d.setPaint(new RadialGradientPaint(gradientCenter, radius, new float[]{0.0f, 1.0f}, new Color[]{primaryColor, secondaryColor}));
@@ -335,6 +409,15 @@ public class GameFrame extends JFrame {
                 int diameter = cellWidth - (2 * margin_piece);
                 g2d.drawOval(x + margin_piece, y + margin_piece, diameter, diameter);
             }
+
+            g2d.setColor(new Color(0, 200, 255, 150));
+            for (Point target : chainTargets) {
+                int x = MARGIN + target.y * cellWidth;
+                int y = MARGIN + target.x * cellHeight;
+                int margin_piece = cellWidth / 10;
+                int diameter = cellWidth - (2 * margin_piece);
+                g2d.drawOval(x + margin_piece, y + margin_piece, diameter, diameter);
+            }
         }
     }
 }
\ No newline at end of file
@@ -1,29 +1,50 @@
 package client;
 
+import game.Geometry;
+import shared.BinaryCodec;
+import shared.Log;
 import shared.Protocol;
 import javax.swing.*;
 import java.awt.*;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class HalmaClient {
+    private static final Log LOG = Log.get("client");
+    private static final Log PROTOCOL_LOG = Log.get("protocol");
+    // -Dhalma.codec=text mantém a ligação no protocolo de texto (útil para depurar com o log do protocolo).
+    private static final boolean REQUEST_BINARY = !"text".equals(System.getProperty("halma.codec"));
+
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private InputStream in;
+    private final ReentrantLock sendLock = new ReentrantLock();
+    // Só passa a true quando o servidor confirma com CODEC:binary.
+    private volatile boolean binaryCodec = false;
     private final GameFrame gameFrame;
     private String lastGameStats;
+    // Linhas de CHAT_LOG recebidas depois das estatísticas, para a janela de resultados.
+    private final List<String> lastChatLog = new ArrayList<>();
     private volatile boolean gameIsOver = false;
 
     // Campos para guardar dados da conexão para reconexão
     private String playerName;
+    private String boardMode = Geometry.CLASSIC.getId();
     private String serverAddress;
     private int serverPort;
     private volatile boolean isTryingToReconnect = false;
+    // Ficha recebida no início da partida; ao reconectar devolve-nos o mesmo lugar enquanto o servidor o guardar.
+    private volatile String resumeToken;
+    // Só assiste: o servidor mostra a partida mais recente e nunca nos dá a vez.
+    private boolean watchOnly = false;
 
     public HalmaClient() {
         gameFrame = new GameFrame(this);
@@ -32,6 +53,10 @@ public class HalmaClient {
         JTextField nameField = new JTextField("Jogador");
         JTextField ipField = new JTextField("localhost");
         JTextField portField = new JTextField("12345");
+        String[] modeLabels = { "Clássico 10x10 (2 jogadores)", "Halma 16x16 (2 jogadores)", "Halma 16x16 (4 jogadores)" };
+        String[] modeIds = { Geometry.CLASSIC.getId(), Geometry.HALMA_16.getId(), Geometry.HALMA_16_FOUR.getId() };
+        JComboBox<String> modeBox = new JComboBox<>(modeLabels);
+        JCheckBox watchBox = new JCheckBox("Apenas assistir");
 
         JPanel panel = new JPanel(new GridLayout(0, 1));
         panel.add(new JLabel("Seu Nome:"));
@@ -40,12 +65,18 @@ public class HalmaClient {
         panel.add(ipField);
         panel.add(new JLabel("Porta do Servidor:"));
         panel.add(portField);
+        panel.add(new JLabel("Tabuleiro:"));
+        panel.add(modeBox);
+        panel.add(watchBox);
 
         int result = JOptionPane.showConfirmDialog(null, panel, "Conectar ao Jogo Halma",
                 JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
 
         if (result == JOptionPane.OK_OPTION) {
-            this.playerName = nameField.getText();
+            // ':' separa os campos do protocolo, por isso não pode fazer parte do nome.
+            this.playerName = nameField.getText().replace(Protocol.SEPARATOR, "");
+            this.boardMode = modeIds[modeBox.getSelectedIndex()];
+            this.watchOnly = watchBox.isSelected();
             this.serverAddress = ipField.getText();
             String portStr = portField.getText();
 
@@ -92,22 +123,22 @@ public class HalmaClient {
 
                     Thread.sleep(5000); // Espera 5 segundos
 
-                    socket = new Socket(serverAddress, serverPort);
-                    out = new PrintWriter(socket.getOutputStream(), true);
-                    in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    openConnection(serverAddress, serverPort);
                     
                     // Se reconectado, reenvia o nome para o servidor
-                    out.println(Protocol.SET_NAME + Protocol.SEPARATOR + playerName);
+                    send(setNameMessage());
                     
                     new Thread(new ServerListener()).start(); // Inicia um novo listener
 
-                    SwingUtilities.invokeLater(() -> gameFrame.updateStatus("Reconectado! Aguardando oponente..."));
+                    String status = watchOnly ? "Reconectado! Voltando a assistir..."
+                            : resumeToken != null ? "Reconectado! Retomando a partida..." : "Reconectado! Aguardando oponente...";
+                    SwingUtilities.invokeLater(() -> gameFrame.updateStatus(status));
                     
                     isTryingToReconnect = false; // Sai do loop de reconexão
                     break;
 
                 } catch (IOException e) {
-                    System.err.println("Falha na reconexão, tentando novamente em 5s...");
+                    LOG.warn("Falha na reconexão, tentando novamente em 5s...");
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     isTryingToReconnect = false;
@@ -121,15 +152,25 @@ public class HalmaClient {
         public void run() {
             try {
                 String serverMessage;
-                while ((serverMessage = in.readLine()) != null) {
-                    System.out.println("CLIENT (" + gameFrame.getPlayerName() + "): Mensagem recebida: " + serverMessage);
+                while ((serverMessage = binaryCodec ? BinaryCodec.readFrame(in) : BinaryCodec.readTextLine(in)) != null) {
+                    PROTOCOL_LOG.trace("CLIENT (", gameFrame.getPlayerName(), "): Mensagem recebida: ", serverMessage);
+                    if (serverMessage.equals(Protocol.CODEC + Protocol.SEPARATOR + BinaryCodec.NAME)) {
+                        // Tem de mudar já aqui: a próxima mensagem lida deste fluxo já vem em binário.
+                        binaryCodec = true;
+                        continue;
+                    }
+                    if (serverMessage.equals(Protocol.PING)) {
+                        // Respondido já aqui: a thread do Swing pode estar ocupada com um diálogo.
+                        send(Protocol.PONG);
+                        continue;
+                    }
                     final String messageForUI = serverMessage;
                     SwingUtilities.invokeLater(() -> processServerMessage(messageForUI));
                 }
             } catch (IOException e) {
                 // Se a conexão for perdida, inicia a tentativa de reconexão
                 if (!gameIsOver && !isTryingToReconnect) {
-                    System.out.println("Conexão com o servidor perdida. Iniciando tentativa de reconexão.");
+                    LOG.info("Conexão com o servidor perdida. Iniciando tentativa de reconexão.");
                     attemptReconnection();
                 }
             }
@@ -146,11 +187,15 @@ public class HalmaClient {
                 case Protocol.UPDATE_SCORE:
                     String[] scores = data.split(Protocol.SEPARATOR);
                     if (scores.length >= 2) {
-                        int p1Moves = Integer.parseInt(scores[0]);
-                        int p2Moves = Integer.parseInt(scores[1]);
-                        gameFrame.updateScores(p1Moves, p2Moves);
+                        int[] moves = new int[scores.length];
+                        for (int i = 0; i < scores.length; i++) moves[i] = Integer.parseInt(scores[i]);
+                        gameFrame.updateScores(moves);
                     }
                     break;
+                case Protocol.BOARD_SETUP:
+                    Geometry geometry = Geometry.byId(data);
+                    if (geometry != null) gameFrame.setGeometry(geometry);
+                    break;
                 case Protocol.VALID_MOVE:
                 case Protocol.OPPONENT_MOVED:
                     String[] coords = data.split(Protocol.SEPARATOR);
@@ -193,10 +238,23 @@ public class HalmaClient {
                     break;
                 case Protocol.GAME_OVER_STATS:
                     lastGameStats = data;
+                    lastChatLog.clear();
+                    break;
+                case Protocol.CHAT_LOG:
+                    lastChatLog.add(data);
+                    break;
+                case Protocol.GAME_ENDED:
+                    handleGameEnd(data.isEmpty() ? "A partida terminou." : data, "Fim de jogo", JOptionPane.INFORMATION_MESSAGE);
                     break;
                 case Protocol.WELCOME:
                     gameFrame.setPlayerId(Integer.parseInt(data));
                     break;
+                case Protocol.RESUME_TOKEN:
+                    resumeToken = data;
+                    break;
+                case Protocol.SNAPSHOT:
+                    applySnapshot(data);
+                    break;
                 case Protocol.OPPONENT_FOUND:
                     String opponentName = data.isEmpty() ? "Oponente" : data;
                     gameFrame.setOpponentName(opponentName);
@@ -217,13 +275,26 @@ public class HalmaClient {
             }
         }
 
+        /** SNAPSHOT:<vez>:<cadeia>:<casas>:<jogadas>... (ver Protocol.SNAPSHOT). */
+        private void applySnapshot(String data) {
+            String[] fields = data.split(Protocol.SEPARATOR);
+            if (fields.length < 3) return;
+            String cells = fields[2];
+            int[] owners = new int[cells.length()];
+            for (int i = 0; i < owners.length; i++) owners[i] = cells.charAt(i) - '0';
+            int[] moves = new int[fields.length - 3];
+            for (int i = 0; i < moves.length; i++) moves[i] = Integer.parseInt(fields[3 + i]);
+            gameFrame.applySnapshot(owners, Integer.parseInt(fields[0]), Integer.parseInt(fields[1]) - 1, moves);
+        }
+
         private void handleGameEnd(String message, String title, int messageType) {
             if (gameIsOver) return;
             gameIsOver = true;
+            resumeToken = null;
 
             JOptionPane.showMessageDialog(gameFrame, message, title, messageType);
             if (lastGameStats != null) {
-                new ResultsDialog(gameFrame, lastGameStats).setVisible(true);
+                new ResultsDialog(gameFrame, lastGameStats, gameFrame.getPlayerCount(), lastChatLog).setVisible(true);
             }
             gameFrame.closeApplication();
             shutdown();
@@ -236,16 +307,14 @@ public class HalmaClient {
                 socket.close();
             }
         } catch (IOException e) {
-            System.err.println("CLIENT: Erro durante fechamento do socket: " + e.getMessage());
+            LOG.warn("Erro durante fechamento do socket: ", e.getMessage());
         }
     }
 
     public void connect(String playerName, String serverAddress, int port) {
         try {
-            socket = new Socket(serverAddress, port);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out.println(Protocol.SET_NAME + Protocol.SEPARATOR + playerName);
+            openConnection(serverAddress, port);
+            send(setNameMessage());
             new Thread(new ServerListener()).start();
             gameFrame.updateStatus("Conectado. Aguardando por um oponente...");
         } catch (IOException e) {
@@ -257,33 +326,77 @@ public class HalmaClient {
         }
     }
 
+    private void openConnection(String serverAddress, int port) throws IOException {
+        socket = new Socket(serverAddress, port);
+        binaryCodec = false;
+        out = new BufferedOutputStream(socket.getOutputStream());
+        in = new BufferedInputStream(socket.getInputStream());
+    }
+
+    /** Envia uma mensagem do protocolo na codificação combinada com o servidor. */
+    private void send(String message) {
+        sendLock.lock();
+        try {
+            if (binaryCodec) BinaryCodec.writeFrame(out, message);
+            else out.write((message + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // A perda de ligação é tratada pelo ServerListener.
+            LOG.warn("Erro ao enviar mensagem: ", e.getMessage());
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
     public void sendMove(int startRow, int startCol, int endRow, int endCol) {
         if (out != null) {
-            out.println(Protocol.MOVE + Protocol.SEPARATOR + startRow + Protocol.SEPARATOR + startCol + Protocol.SEPARATOR + endRow + Protocol.SEPARATOR + endCol);
+            send(Protocol.MOVE + Protocol.SEPARATOR + startRow + Protocol.SEPARATOR + startCol + Protocol.SEPARATOR + endRow + Protocol.SEPARATOR + endCol);
+        }
+    }
+
+    private String setNameMessage() {
+        return Protocol.SET_NAME + Protocol.SEPARATOR + playerName
+                + Protocol.SEPARATOR + Protocol.OPTION_MODE + "=" + boardMode
+                + (REQUEST_BINARY ? Protocol.SEPARATOR + Protocol.OPTION_CODEC + "=" + BinaryCodec.NAME : "")
+                + (watchOnly ? Protocol.SEPARATOR + Protocol.OPTION_WATCH + "=any"
+                        : resumeToken != null ? Protocol.SEPARATOR + Protocol.OPTION_RESUME + "=" + resumeToken : "");
+    }
+
+    /**
+     * Envia numa única mensagem um caminho completo de saltos (linha, coluna de cada casa).
+     */
+    public void sendMovePath(List<Point> path) {
+        if (out != null) {
+            StringBuilder message = new StringBuilder(Protocol.MOVE_PATH);
+            for (Point cell : path) {
+                message.append(Protocol.SEPARATOR).append(cell.x)
+                       .append(Protocol.SEPARATOR).append(cell.y);
+            }
+            send(message.toString());
         }
     }
 
     public void sendChatMessage(String message) {
         if (out != null) {
-            out.println(Protocol.CHAT + Protocol.SEPARATOR + message);
+            send(Protocol.CHAT + Protocol.SEPARATOR + message);
         }
     }
 
     public void sendForfeit() {
         if (out != null) {
-            out.println(Protocol.FORFEIT);
+            send(Protocol.FORFEIT);
         }
     }
 
     public void sendEndChainJump() {
         if (out != null) {
-            out.println(Protocol.END_CHAIN_JUMP);
+            send(Protocol.END_CHAIN_JUMP);
         }
     }
 
     public void sendGetValidMoves(int row, int col) {
         if (out != null) {
-            out.println(Protocol.GET_VALID_MOVES + Protocol.SEPARATOR + row + Protocol.SEPARATOR + col);
+            send(Protocol.GET_VALID_MOVES + Protocol.SEPARATOR + row + Protocol.SEPARATOR + col);
         }
     }
 
@@ -4,23 +4,35 @@ import shared.Protocol;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
+import java.util.regex.Pattern;
 
 public class ResultsDialog extends JDialog {
+    // Campo da análise no GAME_OVER_STATS: blocos de 6 números separados por ';'.
+    private static final Pattern ANALYSIS = Pattern.compile("-?\\d+(,-?\\d+){5}(;-?\\d+(,-?\\d+){5})*");
 
-    public ResultsDialog(Frame owner, String statsData) {
+    public ResultsDialog(Frame owner, String statsData, int playerCount, List<String> chatLines) {
         super(owner, "Tela de resultados da partida", true);
 
-        // Converte os dados da partida
-        String[] parts = statsData.split(Protocol.SEPARATOR, 6);
+        // Converte os dados da partida: vencedor, (movimentos, inválidos) por jogador, o chat e a análise no fim
+        int chatField = 1 + 2 * playerCount;
+        String[] parts = statsData.split(Protocol.SEPARATOR, chatField + 1);
         String winnerInfo = parts[0];
-        String p1Moves = parts[1];
-        String p1Invalid = parts[2];
-        String p2Moves = parts[3];
-        String p2Invalid = parts[4];
+        String inlineChat = parts.length > chatField ? parts[chatField] : "";
+        String analysis = "";
+        // A conversa pode ter ':', por isso a análise é o que vem depois do último, se tiver o formato dela.
+        int lastSeparator = inlineChat.lastIndexOf(Protocol.SEPARATOR);
+        if (lastSeparator >= 0 && ANALYSIS.matcher(inlineChat.substring(lastSeparator + 1)).matches()) {
+            analysis = inlineChat.substring(lastSeparator + 1);
+            inlineChat = inlineChat.substring(0, lastSeparator);
+        }
         String chatLog;
 
-        if (parts.length > 5 && !parts[5].isEmpty()) {
-            chatLog = parts[5].replace("|", "\n");
+        if (!chatLines.isEmpty()) {
+            chatLog = String.join("\n", chatLines);
+        } else if (!inlineChat.isEmpty()) {
+            // Servidores antigos enviam a conversa inteira no próprio GAME_OVER_STATS.
+            chatLog = inlineChat.replace("|", "\n");
         } else {
             chatLog = "Sem histórico de conversas.";
         }
@@ -35,12 +47,38 @@ public class ResultsDialog extends JDialog {
         mainPanel.add(winnerLabel, BorderLayout.NORTH);
 
         // Painel de estatísticas
-        JPanel statsPanel = new JPanel(new GridLayout(2, 2, 10, 5));
-        statsPanel.add(new JLabel("Movimentos do jogador 1: " + p1Moves));
-        statsPanel.add(new JLabel("Movimentos do jogador 2: " + p2Moves));
-        statsPanel.add(new JLabel("Tentativas inválidas do jogador 1: " + p1Invalid));
-        statsPanel.add(new JLabel("Tentativas inválidas do jogador 2: " + p2Invalid));
-        mainPanel.add(statsPanel, BorderLayout.CENTER);
+        JPanel statsPanel = new JPanel(new GridLayout(2, playerCount, 10, 5));
+        for (int i = 0; i < playerCount; i++) {
+            statsPanel.add(new JLabel("Movimentos do jogador " + (i + 1) + ": " + parts[1 + 2 * i]));
+        }
+        for (int i = 0; i < playerCount; i++) {
+            statsPanel.add(new JLabel("Tentativas inválidas do jogador " + (i + 1) + ": " + parts[2 + 2 * i]));
+        }
+
+        // Análise dos lances (um bloco por jogador; ausente se o servidor não a conseguiu calcular)
+        JPanel centerPanel = new JPanel(new BorderLayout(10, 10));
+        centerPanel.add(statsPanel, BorderLayout.NORTH);
+        if (!analysis.isEmpty()) {
+            String[] players = analysis.split(";");
+            JPanel analysisPanel = new JPanel(new GridLayout(players.length + 1, 7, 10, 2));
+            analysisPanel.setBorder(BorderFactory.createTitledBorder("Análise dos lances"));
+            for (String header : new String[] { "Jogador", "Turnos", "Avanço médio", "Maior cadeia",
+                                                "Lances ótimos", "Casas perdidas", "Distância final" }) {
+                analysisPanel.add(new JLabel(header));
+            }
+            for (int i = 0; i < players.length; i++) {
+                String[] values = players[i].split(",");
+                analysisPanel.add(new JLabel(String.valueOf(i + 1)));
+                analysisPanel.add(new JLabel(values[0]));
+                analysisPanel.add(new JLabel(String.format("%.1f", Integer.parseInt(values[1]) / 10.0)));
+                analysisPanel.add(new JLabel(values[2] + " saltos"));
+                analysisPanel.add(new JLabel(values[3] + "%"));
+                analysisPanel.add(new JLabel(values[4]));
+                analysisPanel.add(new JLabel(values[5]));
+            }
+            centerPanel.add(analysisPanel, BorderLayout.CENTER);
+        }
+        mainPanel.add(centerPanel, BorderLayout.CENTER);
 
         // Histórico de mensagens
         JTextArea chatArea = new JTextArea(10, 30);
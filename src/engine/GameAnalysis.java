@@ -0,0 +1,141 @@
+package engine;
+
+import game.Board;
+import game.Geometry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Análise da qualidade dos lances de uma partida já terminada.
+ *
+ * Para cada posição do {@link MoveLog} calcula o ganho de distância do lance jogado e o
+ * melhor ganho guloso disponível (o lance completo que mais aproxima uma peça do destino).
+ * As posições são divididas em blocos e analisadas em paralelo com fork-join: cada bloco
+ * repete a partida no seu próprio {@link Board} até ao início do bloco, por isso não há
+ * tabuleiros partilhados nem cópias por posição.
+ */
+public final class GameAnalysis {
+    // Abaixo disto um bloco é analisado sequencialmente; repetir a partida até lá é barato.
+    private static final int LEAF_TURNS = 16;
+
+    /** Resumo por jogador; todas as distâncias são em casas (Chebyshev). */
+    public static final class PlayerSummary {
+        public int turns;
+        public int totalGain;
+        public int longestChain;
+        public int greedyMatches;
+        public int lostDistance;
+        public int finalDistance;
+
+        /** Percentagem dos turnos em que o lance jogado foi tão bom quanto o melhor lance guloso. */
+        public int greedyPercent() {
+            return turns == 0 ? 0 : greedyMatches * 100 / turns;
+        }
+
+        /** Ganho médio de distância por turno, em décimos de casa. */
+        public int averageGainTenths() {
+            return turns == 0 ? 0 : totalGain * 10 / turns;
+        }
+    }
+
+    private GameAnalysis() {}
+
+    /**
+     * Analisa a partida em {@code pool} e devolve um resumo por jogador (índice = id - 1).
+     * Bloqueia até a análise terminar; deve ser chamado fora da thread da sessão.
+     */
+    public static PlayerSummary[] analyze(Geometry geometry, MoveLog log, ForkJoinPool pool) {
+        int turns = log.size();
+        int[] playedGain = new int[turns];
+        int[] bestGain = new int[turns];
+        if (turns > 0) {
+            pool.invoke(new AnalyzeRange(geometry, log, 0, turns, playedGain, bestGain));
+        }
+
+        PlayerSummary[] summaries = new PlayerSummary[geometry.getPlayerCount()];
+        for (int i = 0; i < summaries.length; i++) summaries[i] = new PlayerSummary();
+        Board board = new Board(geometry);
+        for (int turn = 0; turn < turns; turn++) {
+            PlayerSummary summary = summaries[log.playerAt(turn) - 1];
+            summary.turns++;
+            summary.totalGain += playedGain[turn];
+            summary.longestChain = Math.max(summary.longestChain, log.hopsAt(turn));
+            if (playedGain[turn] >= bestGain[turn]) summary.greedyMatches++;
+            else summary.lostDistance += bestGain[turn] - playedGain[turn];
+            board.performMove(log.fromAt(turn), log.toAt(turn));
+        }
+        for (int i = 0; i < summaries.length; i++) {
+            summaries[i].finalDistance = board.distanceRemaining(i + 1);
+        }
+        return summaries;
+    }
+
+    /** Analisa os turnos [start, end); cada folha escreve apenas nos seus índices dos arrays de resultado. */
+    private static final class AnalyzeRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Geometry geometry;
+        private final MoveLog log;
+        private final int start;
+        private final int end;
+        private final int[] playedGain;
+        private final int[] bestGain;
+
+        AnalyzeRange(Geometry geometry, MoveLog log, int start, int end, int[] playedGain, int[] bestGain) {
+            this.geometry = geometry;
+            this.log = log;
+            this.start = start;
+            this.end = end;
+            this.playedGain = playedGain;
+            this.bestGain = bestGain;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= LEAF_TURNS) {
+                analyzeLeaf();
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new AnalyzeRange(geometry, log, start, middle, playedGain, bestGain),
+                      new AnalyzeRange(geometry, log, middle, end, playedGain, bestGain));
+        }
+
+        private void analyzeLeaf() {
+            Board board = new Board(geometry);
+            for (int turn = 0; turn < start; turn++) {
+                board.performMove(log.fromAt(turn), log.toAt(turn));
+            }
+            int[] pieces = new int[board.getCellCount()];
+            int[] targets = new int[board.getCellCount()];
+            for (int turn = start; turn < end; turn++) {
+                int player = log.playerAt(turn);
+                int from = log.fromAt(turn);
+                int to = log.toAt(turn);
+                playedGain[turn] = board.distanceToTarget(player, from) - board.distanceToTarget(player, to);
+                bestGain[turn] = bestGreedyGain(board, player, pieces, targets);
+                board.performMove(from, to);
+            }
+        }
+
+        /** Maior ganho de distância entre todos os lances completos (passos e cadeias de saltos) do jogador. */
+        private static int bestGreedyGain(Board board, int player, int[] pieces, int[] targets) {
+            int best = Integer.MIN_VALUE;
+            int pieceCount = board.piecesOf(player, pieces);
+            for (int p = 0; p < pieceCount; p++) {
+                int from = pieces[p];
+                int fromDistance = board.distanceToTarget(player, from);
+                int steps = board.generateMoves(from, false, targets);
+                for (int i = 0; i < steps; i++) {
+                    best = Math.max(best, fromDistance - board.distanceToTarget(player, targets[i]));
+                }
+                int jumps = board.jumpDestinations(from, targets);
+                for (int i = 0; i < jumps; i++) {
+                    best = Math.max(best, fromDistance - board.distanceToTarget(player, targets[i]));
+                }
+            }
+            return best == Integer.MIN_VALUE ? 0 : best;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Sequência dos turnos de uma partida, guardada em arrays paralelos de {@code int}.
+ * Cada turno é registado pela casa de partida, pela casa final e pelo número de saltos
+ * (0 para um passo simples), o suficiente para repetir a partida num {@link game.Board}.
+ */
+public final class MoveLog {
+    private int[] players = new int[64];
+    private int[] from = new int[64];
+    private int[] to = new int[64];
+    private int[] hops = new int[64];
+    private int size;
+
+    public void append(int player, int fromCell, int toCell, int hopCount) {
+        if (size == players.length) {
+            int capacity = size * 2;
+            players = Arrays.copyOf(players, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            hops = Arrays.copyOf(hops, capacity);
+        }
+        players[size] = player;
+        from[size] = fromCell;
+        to[size] = toCell;
+        hops[size] = hopCount;
+        size++;
+    }
+
+    /** Cópia independente, para analisar a partida noutra thread sem partilhar estado com a sessão. */
+    public MoveLog copy() {
+        MoveLog copy = new MoveLog();
+        copy.players = Arrays.copyOf(players, Math.max(size, 1));
+        copy.from = Arrays.copyOf(from, Math.max(size, 1));
+        copy.to = Arrays.copyOf(to, Math.max(size, 1));
+        copy.hops = Arrays.copyOf(hops, Math.max(size, 1));
+        copy.size = size;
+        return copy;
+    }
+
+    public int size() { return size; }
+    public int playerAt(int turn) { return players[turn]; }
+    public int fromAt(int turn) { return from[turn]; }
+    public int toAt(int turn) { return to[turn]; }
+    public int hopsAt(int turn) { return hops[turn]; }
+}
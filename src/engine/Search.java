@@ -0,0 +1,238 @@
+package engine;
+
+import game.Board;
+
+/**
+ * Busca alfa-beta (negamax) com aprofundamento iterativo para partidas de 2 jogadores.
+ *
+ * Um lance é um movimento completo da vez: um passo para uma casa vizinha ou uma cadeia
+ * de saltos até qualquer casa alcançável. Os lances são compactados como
+ * {@code (origem << 16) | destino}. A busca respeita um prazo rígido: quando o tempo acaba,
+ * devolve o melhor lance da última profundidade concluída. Toda a memória (tabela de
+ * transposição e listas de lances por nível) é alocada uma vez no construtor, por isso uma
+ * instância deve ser reutilizada pela mesma thread e nunca partilhada entre threads.
+ */
+public final class Search {
+    public static final int NO_MOVE = -1;
+
+    private static final int WIN_SCORE = 1_000_000;
+    private static final int MAX_DEPTH = 12;
+    // O relógio só é consultado de tantos em tantos nós.
+    private static final int CLOCK_CHECK_MASK = 1023;
+
+    private final TranspositionTable table;
+    private final int[][] moves = new int[MAX_DEPTH + 1][];
+    private final int[][] moveScores = new int[MAX_DEPTH + 1][];
+    private int[] pieces;
+    private int[] targets;
+
+    private long deadline;
+    private boolean timeUp;
+    private long nodes;
+    private int completedDepth;
+
+    /** @param tableBits a tabela de transposição terá {@code 2^tableBits} entradas. */
+    public Search(int tableBits) {
+        this.table = new TranspositionTable(tableBits);
+    }
+
+    /**
+     * Procura o melhor lance de {@code player} na posição {@code root} dentro de {@code budgetMillis}.
+     * O tabuleiro é copiado; {@code root} não é alterado.
+     *
+     * @return lance compactado ou {@link #NO_MOVE} se o jogador não tiver lances.
+     */
+    public int findBestMove(Board root, int player, long budgetMillis) {
+        Board board = new Board(root);
+        ensureCapacity(board);
+        table.clear();
+        deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        timeUp = false;
+        nodes = 0;
+        completedDepth = 0;
+
+        int bestMove = NO_MOVE;
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            int move = searchRoot(board, player, depth);
+            if (timeUp) break;
+            bestMove = move;
+            completedDepth = depth;
+            if (move == NO_MOVE) break;
+        }
+        if (bestMove == NO_MOVE) {
+            // Nem a profundidade 1 terminou: usa o lance mais bem ordenado.
+            int count = generateMoves(board, player, 0);
+            if (count > 0) bestMove = moves[0][0];
+        }
+        return bestMove;
+    }
+
+    public long getNodes() { return nodes; }
+    public int getCompletedDepth() { return completedDepth; }
+
+    public static int from(int move) { return move >>> 16; }
+    public static int to(int move) { return move & 0xFFFF; }
+
+    private int searchRoot(Board board, int player, int depth) {
+        int count = generateMoves(board, player, 0);
+        if (count == 0) return NO_MOVE;
+        long key = board.hash() ^ board.turnKey(player);
+        promoteTableMove(table.probe(key), 0, count);
+
+        int alpha = -WIN_SCORE - 1;
+        int beta = WIN_SCORE + 1;
+        int bestMove = moves[0][0];
+        for (int i = 0; i < count; i++) {
+            int move = moves[0][i];
+            board.performMove(from(move), to(move));
+            int score = board.checkForWinner(player)
+                    ? WIN_SCORE - 1
+                    : -negamax(board, opponent(player), depth - 1, 1, -beta, -alpha);
+            board.performMove(to(move), from(move));
+            if (timeUp) return bestMove;
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        table.store(key, bestMove, alpha, depth, TranspositionTable.EXACT);
+        return bestMove;
+    }
+
+    private int negamax(Board board, int player, int depth, int ply, int alpha, int beta) {
+        if ((++nodes & CLOCK_CHECK_MASK) == 0 && System.nanoTime() > deadline) timeUp = true;
+        if (timeUp) return 0;
+        if (depth == 0 || ply >= MAX_DEPTH) return evaluate(board, player);
+
+        long key = board.hash() ^ board.turnKey(player);
+        long entry = table.probe(key);
+        if (entry != 0L && TranspositionTable.depthOf(entry) >= depth) {
+            int stored = TranspositionTable.scoreOf(entry);
+            int flag = TranspositionTable.flagOf(entry);
+            if (flag == TranspositionTable.EXACT) return stored;
+            if (flag == TranspositionTable.LOWER_BOUND && stored >= beta) return stored;
+            if (flag == TranspositionTable.UPPER_BOUND && stored <= alpha) return stored;
+        }
+
+        int count = generateMoves(board, player, ply);
+        if (count == 0) return evaluate(board, player);
+        promoteTableMove(entry, ply, count);
+
+        int originalAlpha = alpha;
+        int best = -WIN_SCORE - 1;
+        int bestMove = moves[ply][0];
+        for (int i = 0; i < count; i++) {
+            int move = moves[ply][i];
+            board.performMove(from(move), to(move));
+            int score = board.checkForWinner(player)
+                    ? WIN_SCORE - ply - 1
+                    : -negamax(board, opponent(player), depth - 1, ply + 1, -beta, -alpha);
+            board.performMove(to(move), from(move));
+            if (timeUp) return 0;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (best > alpha) alpha = best;
+            if (alpha >= beta) break;
+        }
+
+        int flag = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND
+                : TranspositionTable.EXACT;
+        table.store(key, bestMove, best, depth, flag);
+        return best;
+    }
+
+    /**
+     * Avaliação do ponto de vista de {@code player}: quanto o adversário ainda tem de andar
+     * menos quanto o próprio jogador tem de andar, com bónus por peças já em casa.
+     */
+    private static int evaluate(Board board, int player) {
+        int other = opponent(player);
+        return (board.distanceRemaining(other) - board.distanceRemaining(player)) * 10
+                + (board.piecesHome(player) - board.piecesHome(other)) * 4;
+    }
+
+    /**
+     * Gera os lances completos de {@code player} no nível {@code ply}, ordenados pelo ganho
+     * de distância até o destino (maior primeiro).
+     */
+    private int generateMoves(Board board, int player, int ply) {
+        int[] list = moves[ply];
+        int[] scores = moveScores[ply];
+        int pieceCount = board.piecesOf(player, pieces);
+        int count = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            int from = pieces[p];
+            int fromDistance = board.distanceToTarget(player, from);
+
+            // Passos: os destinos imediatos adjacentes (os saltos vêm do fecho transitivo abaixo).
+            int immediate = board.generateMoves(from, false, targets);
+            for (int i = 0; i < immediate; i++) {
+                int to = targets[i];
+                if (!isAdjacent(board, from, to)) continue;
+                list[count] = (from << 16) | to;
+                scores[count++] = fromDistance - board.distanceToTarget(player, to);
+            }
+            int jumps = board.jumpDestinations(from, targets);
+            for (int i = 0; i < jumps; i++) {
+                int to = targets[i];
+                if (isAdjacent(board, from, to)) continue;
+                list[count] = (from << 16) | to;
+                scores[count++] = fromDistance - board.distanceToTarget(player, to);
+            }
+        }
+        sortByScore(list, scores, count);
+        return count;
+    }
+
+    /** Coloca o lance guardado na tabela de transposição (se houver) na frente da lista. */
+    private void promoteTableMove(long entry, int ply, int count) {
+        if (entry == 0L) return;
+        int tableMove = TranspositionTable.moveOf(entry);
+        int[] list = moves[ply];
+        for (int i = 1; i < count; i++) {
+            if (list[i] == tableMove) {
+                System.arraycopy(list, 0, list, 1, i);
+                list[0] = tableMove;
+                return;
+            }
+        }
+    }
+
+    private static void sortByScore(int[] list, int[] scores, int count) {
+        for (int i = 1; i < count; i++) {
+            int move = list[i];
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                list[j + 1] = list[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            list[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+    private static boolean isAdjacent(Board board, int from, int to) {
+        return Math.abs(board.rowOf(from) - board.rowOf(to)) <= 1 && Math.abs(board.colOf(from) - board.colOf(to)) <= 1;
+    }
+
+    private static int opponent(int player) {
+        return player == 1 ? 2 : 1;
+    }
+
+    private void ensureCapacity(Board board) {
+        int cells = board.getCellCount();
+        if (targets != null && targets.length >= cells) return;
+        int maxMoves = board.getGeometry().getCampSize() * cells;
+        pieces = new int[cells];
+        targets = new int[cells];
+        for (int ply = 0; ply <= MAX_DEPTH; ply++) {
+            moves[ply] = new int[maxMoves];
+            moveScores[ply] = new int[maxMoves];
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package engine;
+
+/**
+ * Tabela de transposição de tamanho fixo, guardada em dois arrays de {@code long}
+ * (chave e dados compactados), sem objetos por entrada. Substitui sempre a entrada
+ * do mesmo índice quando a nova busca é pelo menos tão profunda.
+ */
+final class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER_BOUND = 1;
+    static final int UPPER_BOUND = 2;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /** @param bits a tabela terá {@code 2^bits} entradas (16 bytes cada). */
+    TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        data = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(data, 0L);
+    }
+
+    /** Devolve os dados compactados da posição, ou 0 se não estiver na tabela. */
+    long probe(long key) {
+        int slot = (int) key & mask;
+        return keys[slot] == key ? data[slot] : 0L;
+    }
+
+    void store(long key, int move, int score, int depth, int flag) {
+        int slot = (int) key & mask;
+        if (keys[slot] != key && data[slot] != 0L && depthOf(data[slot]) > depth) return;
+        keys[slot] = key;
+        // [move:32][score:22][depth:8][flag:2]; o bit mais baixo de "depth + 1" garante dados != 0.
+        data[slot] = ((long) move << 32)
+                | ((long) (score & 0x3FFFFF) << 10)
+                | ((long) ((depth + 1) & 0xFF) << 2)
+                | flag;
+    }
+
+    static int moveOf(long entry) { return (int) (entry >>> 32); }
+    static int scoreOf(long entry) { return ((int) (entry >>> 10) << 10) >> 10; }
+    static int depthOf(long entry) { return (int) ((entry >>> 2) & 0xFF) - 1; }
+    static int flagOf(long entry) { return (int) (entry & 0x3); }
+}
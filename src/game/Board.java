@@ -1,152 +1,408 @@
 package game;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.awt.Point;
-
+/**
+ * Tabuleiro representado por bitboards: cada jogador tem um conjunto de bits de ocupação
+ * (duas palavras {@code long} para as 100 casas do tabuleiro clássico), indexado por
+ * {@code linha * tamanho + coluna}. Os movimentos usam índices compactados nesse mesmo formato e
+ * as tabelas de vizinhança, salto e acampamento pré-calculadas da {@link Geometry}, sem criar
+ * objetos por casa nem por consulta.
+ */
 public class Board {
-    public static final int SIZE = 10;
-    private final Piece[][] grid;
+    /** Número máximo de destinos imediatos de uma peça (8 passos + 8 saltos). */
+    public static final int MAX_MOVES = 16;
+
+    // Peças são imutáveis, então uma instância por jogador basta para getPieceAt.
+    private static final Piece[] PIECES = { null, new Piece(1), new Piece(2), new Piece(3), new Piece(4) };
+
+    private static final int DIRECTIONS = Geometry.DIRECTIONS;
+
+    private final Geometry geometry;
+    private final int size;
+    private final int cells;
+    private final int[] neighbour;
+    private final int[] jumpLanding;
+
+    // occupancy[p] = casas do jogador p + 1; occupied = união de todos os jogadores.
+    private final long[][] occupancy;
+    private final long[] occupied;
+    // Hash de Zobrist da posição, mantido incrementalmente em performMove.
+    private long hash;
+    // Por jogador: peças já no acampamento de destino e soma das distâncias até ele.
+    private final int[] piecesHome;
+    private final int[] distanceRemaining;
+
+    // Áreas de trabalho da busca de saltos em cadeia, criadas no primeiro uso.
+    private int[] chainQueue;
+    private int[] chainParent;
+    private long[] chainVisited;
 
     public Board() {
-        grid = new Piece[SIZE][SIZE];
+        this(Geometry.CLASSIC);
+    }
+
+    public Board(Geometry geometry) {
+        this.geometry = geometry;
+        this.size = geometry.size;
+        this.cells = geometry.cells;
+        this.neighbour = geometry.neighbour;
+        this.jumpLanding = geometry.jumpLanding;
+        this.occupancy = new long[geometry.playerCount][geometry.words];
+        this.occupied = new long[geometry.words];
+        this.piecesHome = new int[geometry.playerCount];
+        this.distanceRemaining = new int[geometry.playerCount];
         setupPieces();
     }
 
+    /** Cópia independente de {@code other} (as tabelas da geometria continuam partilhadas). */
+    public Board(Board other) {
+        this.geometry = other.geometry;
+        this.size = other.size;
+        this.cells = other.cells;
+        this.neighbour = other.neighbour;
+        this.jumpLanding = other.jumpLanding;
+        this.occupancy = new long[other.occupancy.length][];
+        for (int player = 0; player < occupancy.length; player++) occupancy[player] = other.occupancy[player].clone();
+        this.occupied = other.occupied.clone();
+        this.hash = other.hash;
+        this.piecesHome = other.piecesHome.clone();
+        this.distanceRemaining = other.distanceRemaining.clone();
+    }
+
     private void setupPieces() {
-        // Player 1 (15 peças)
-        grid[0][0] = new Piece(1); grid[0][1] = new Piece(1); grid[0][2] = new Piece(1); grid[0][3] = new Piece(1); grid[0][4] = new Piece(1);
-        grid[1][0] = new Piece(1); grid[1][1] = new Piece(1); grid[1][2] = new Piece(1); grid[1][3] = new Piece(1);
-        grid[2][0] = new Piece(1); grid[2][1] = new Piece(1); grid[2][2] = new Piece(1);
-        grid[3][0] = new Piece(1); grid[3][1] = new Piece(1);
-        grid[4][0] = new Piece(1);
+        // Cada jogador começa com as peças no seu acampamento (tabelas da geometria).
+        for (int player = 0; player < geometry.playerCount; player++) {
+            for (int cell : geometry.startCamp[player]) place(player, cell);
+        }
+    }
 
-        // Player 2 (15 peças)
-        grid[SIZE - 1][SIZE - 1] = new Piece(2); grid[SIZE - 1][SIZE - 2] = new Piece(2); grid[SIZE - 1][SIZE - 3] = new Piece(2); grid[SIZE - 1][SIZE - 4] = new Piece(2); grid[SIZE - 1][SIZE - 5] = new Piece(2);
-        grid[SIZE - 2][SIZE - 1] = new Piece(2); grid[SIZE - 2][SIZE - 2] = new Piece(2); grid[SIZE - 2][SIZE - 3] = new Piece(2); grid[SIZE - 2][SIZE - 4] = new Piece(2);
-        grid[SIZE - 3][SIZE - 1] = new Piece(2); grid[SIZE - 3][SIZE - 2] = new Piece(2); grid[SIZE - 3][SIZE - 3] = new Piece(2);
-        grid[SIZE - 4][SIZE - 1] = new Piece(2); grid[SIZE - 4][SIZE - 2] = new Piece(2);
-        grid[SIZE - 5][SIZE - 1] = new Piece(2);
+    /** Põe uma peça do jogador {@code player} (base 0) numa casa vazia, atualizando o hash e os contadores. */
+    private void place(int player, int cell) {
+        setBit(occupancy[player], cell);
+        setBit(occupied, cell);
+        hash ^= geometry.zobrist[player][cell];
+        if (geometry.inTargetCamp[player][cell]) piecesHome[player]++;
+        distanceRemaining[player] += geometry.distanceToTarget[player][cell];
     }
 
     /**
-     * Calcula e retorna uma lista de movimentos IMEDIATOS válidos para uma peça.
-     * Não mostra mais os saltos em cadeia.
+     * Tira do tabuleiro todas as peças do jogador {@code player} (1..n), atualizando o hash e os
+     * contadores. Usado quando um jogador sai de uma partida que continua sem ele.
      */
-    public List<Point> getValidMoves(int startRow, int startCol, boolean inChainJump) {
-        List<Point> validMoves = new ArrayList<>();
-        Piece piece = getPieceAt(startRow, startCol);
-        if (piece == null) {
-            return validMoves;
+    public void removePieces(int player) {
+        long[] bits = occupancy[player - 1];
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(word);
+                clearBit(occupied, cell);
+                hash ^= geometry.zobrist[player - 1][cell];
+                word &= word - 1;
+            }
+            bits[w] = 0;
         }
+        piecesHome[player - 1] = 0;
+        distanceRemaining[player - 1] = 0;
+    }
+
+    /**
+     * Substitui a posição inteira: {@code owners[cell]} é o id do dono da casa, ou 0 se estiver
+     * vazia. Usado pelo cliente para aplicar o SNAPSHOT que recebe ao retomar uma partida.
+     */
+    public void loadOwners(int[] owners) {
+        for (long[] bits : occupancy) java.util.Arrays.fill(bits, 0);
+        java.util.Arrays.fill(occupied, 0);
+        java.util.Arrays.fill(piecesHome, 0);
+        java.util.Arrays.fill(distanceRemaining, 0);
+        hash = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int player = owners[cell] - 1;
+            if (player >= 0 && player < occupancy.length) place(player, cell);
+        }
+    }
+
+    public Geometry getGeometry() { return geometry; }
+    public int getSize() { return size; }
+    public int getCellCount() { return cells; }
+
+    public int index(int row, int col) { return row * size + col; }
+    public int rowOf(int index) { return index / size; }
+    public int colOf(int index) { return index % size; }
+
+    /**
+     * Calcula os movimentos IMEDIATOS válidos para uma peça (passos e primeiro nível de saltos).
+     * Conveniência que aloca o array de resultado; os caminhos críticos devem usar
+     * {@link #generateMoves(int, boolean, int[])} com um buffer reutilizado.
+     *
+     * @return índices compactados ({@link #index(int, int)}) das casas de destino.
+     */
+    public int[] getValidMoves(int startRow, int startCol, boolean inChainJump) {
+        if (!isValidCoordinate(startRow, startCol)) return new int[0];
+        int[] buffer = new int[MAX_MOVES];
+        int count = generateMoves(index(startRow, startCol), inChainJump, buffer);
+        return java.util.Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Escreve em {@code out} os índices compactados dos destinos imediatos da peça em {@code from}
+     * e devolve quantos foram escritos. {@code out} deve ter pelo menos {@link #MAX_MOVES} posições.
+     * Não aloca memória.
+     */
+    public int generateMoves(int from, boolean inChainJump, int[] out) {
+        if (!isOccupied(from)) return 0;
+        int count = 0;
+        int base = from * DIRECTIONS;
 
         // 1. Se não estiver numa cadeia de saltos, adiciona movimentos de 1 casa.
         if (!inChainJump) {
-            for (int r = -1; r <= 1; r++) {
-                for (int c = -1; c <= 1; c++) {
-                    if (r == 0 && c == 0) continue;
-                    int destRow = startRow + r;
-                    int destCol = startCol + c;
-                    if (isSingleStepValid(destRow, destCol)) {
-                        validMoves.add(new Point(destRow, destCol));
-                    }
-                }
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int to = neighbour[base + d];
+                if (to >= 0 && !isOccupied(to)) out[count++] = to;
             }
         }
-        
+
         // 2. Adiciona APENAS o primeiro nível de saltos possíveis.
-        for (int dr = -1; dr <= 1; dr++) {
-            for (int dc = -1; dc <= 1; dc++) {
-                if (dr == 0 && dc == 0) continue;
-
-                int jumpedPieceRow = startRow + dr;
-                int jumpedPieceCol = startCol + dc;
-                int landingRow = startRow + dr * 2;
-                int landingCol = startCol + dc * 2;
-
-                if (isJumpValid(jumpedPieceRow, jumpedPieceCol, landingRow, landingCol)) {
-                    validMoves.add(new Point(landingRow, landingCol));
-                }
-            }
+        for (int d = 0; d < DIRECTIONS; d++) {
+            int to = jumpLanding[base + d];
+            if (to >= 0 && isOccupied(neighbour[base + d]) && !isOccupied(to)) out[count++] = to;
         }
-
-        return validMoves;
+        return count;
     }
-    
-    /**
-     * Verifica se um movimento de uma única casa é válido.
-     */
-    private boolean isSingleStepValid(int endRow, int endCol) {
-        return isValidCoordinate(endRow, endCol) && grid[endRow][endCol] == null;
-    }
-    
+
     /**
-     * Verifica se um salto é válido (casa intermediária ocupada, casa final vazia).
+     * Verifica diretamente se mover a peça de {@code from} para {@code to} é legal para {@code player},
+     * sem gerar a lista de movimentos.
      */
-    private boolean isJumpValid(int jumpedRow, int jumpedCol, int landingRow, int landingCol) {
-        return isValidCoordinate(landingRow, landingCol) && 
-               grid[landingRow][landingCol] == null &&
-               isValidCoordinate(jumpedRow, jumpedCol) && 
-               grid[jumpedRow][jumpedCol] != null;
+    public boolean isLegalMove(int from, int to, int player, boolean inChainJump) {
+        if (from < 0 || from >= cells || to < 0 || to >= cells) return false;
+        if (!testBit(occupancy[player - 1], from) || isOccupied(to)) return false;
+
+        int dr = rowOf(to) - rowOf(from);
+        int dc = colOf(to) - colOf(from);
+        if (Math.abs(dr) <= 1 && Math.abs(dc) <= 1) {
+            return !inChainJump && (dr != 0 || dc != 0);
+        }
+        if ((dr == 0 || Math.abs(dr) == 2) && (dc == 0 || Math.abs(dc) == 2)) {
+            return isOccupied(index(rowOf(from) + dr / 2, colOf(from) + dc / 2));
+        }
+        return false;
     }
 
     public boolean movePiece(int startRow, int startCol, int endRow, int endCol, int player, boolean inChainJump) {
-        Piece piece = getPieceAt(startRow, startCol);
-        if (piece == null || piece.getPlayerId() != player) {
+        if (!isValidCoordinate(startRow, startCol) || !isValidCoordinate(endRow, endCol)) {
             return false;
         }
-        
-        List<Point> validMoves = getValidMoves(startRow, startCol, inChainJump);
-        
-        for (Point move : validMoves) {
-            if (move.x == endRow && move.y == endCol) {
-                performMove(startRow, startCol, endRow, endCol);
-                return true;
-            }
+        if (!isLegalMove(index(startRow, startCol), index(endRow, endCol), player, inChainJump)) {
+            return false;
         }
+        performMove(startRow, startCol, endRow, endCol);
+        return true;
+    }
+
+    public boolean canJumpFrom(int row, int col) {
+        if (!isValidCoordinate(row, col)) return false;
+        int from = index(row, col);
+        if (!isOccupied(from)) return false;
 
+        int base = from * DIRECTIONS;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            int to = jumpLanding[base + d];
+            if (to >= 0 && isOccupied(neighbour[base + d]) && !isOccupied(to)) return true;
+        }
         return false;
     }
 
-    public boolean canJumpFrom(int row, int col) {
-        if (getPieceAt(row, col) == null) return false;
-        
-        for (int dr = -1; dr <= 1; dr++) {
-            for (int dc = -1; dc <= 1; dc++) {
-                if (dr == 0 && dc == 0) continue;
-                if (isJumpValid(row + dr, col + dc, row + dr * 2, col + dc * 2)) {
-                    return true;
-                }
+    /**
+     * Escreve em {@code out} todas as casas alcançáveis a partir de {@code from} por uma
+     * sequência de um ou mais saltos (fecho transitivo), e devolve quantas são.
+     * {@code out} deve ter espaço para {@link #getCellCount()} posições.
+     */
+    public int jumpDestinations(int from, int[] out) {
+        int count = exploreJumps(from, -1);
+        for (int i = 1; i <= count; i++) out[i - 1] = chainQueue[i];
+        return count;
+    }
+
+    /**
+     * Procura uma sequência de saltos de {@code from} até {@code to} e escreve o caminho
+     * (incluindo as duas pontas) em {@code path}. Devolve o número de casas do caminho,
+     * ou 0 se {@code to} não for alcançável só com saltos.
+     */
+    public int findJumpPath(int from, int to, int[] path) {
+        if (to < 0 || to >= cells || to == from || exploreJumps(from, to) == 0 || !testBit(chainVisited, to)) {
+            return 0;
+        }
+        int length = 0;
+        for (int cell = to; cell != from; cell = chainParent[cell]) length++;
+        int i = length;
+        for (int cell = to; cell != from; cell = chainParent[cell]) path[i--] = cell;
+        path[0] = from;
+        return length + 1;
+    }
+
+    /**
+     * Valida e aplica de uma só vez um caminho de saltos {@code path[0..length)} da peça de
+     * {@code player}. O destino tem de ser diferente da origem e estar no conjunto de casas
+     * alcançáveis por saltos, e cada etapa tem de ser um salto válido; só então a peça é movida
+     * da primeira para a última casa.
+     */
+    public boolean applyJumpPath(int[] path, int length, int player) {
+        if (length < 2 || length > cells) return false;
+        int from = path[0];
+        int to = path[length - 1];
+        // Um caminho que volta à origem (a→b→a) deixaria o tabuleiro igual mas gastaria a vez.
+        if (from < 0 || from >= cells || to < 0 || to >= cells || to == from) return false;
+        if (!testBit(occupancy[player - 1], from)) return false;
+        if (exploreJumps(from, to) == 0 || !testBit(chainVisited, to)) return false;
+
+        for (int i = 1; i < length; i++) {
+            if (!isJumpFromTo(path[i - 1], path[i], from)) return false;
+        }
+        performMove(rowOf(from), colOf(from), rowOf(to), colOf(to));
+        return true;
+    }
+
+    /**
+     * Busca em largura pelas casas alcançáveis com saltos a partir de {@code from}, considerando
+     * {@code from} vazia (a peça saiu de lá). Para cedo ao encontrar {@code target} (use -1 para
+     * explorar tudo). Os resultados ficam em chainQueue[1..n], chainParent e chainVisited.
+     */
+    private int exploreJumps(int from, int target) {
+        if (chainQueue == null) {
+            chainQueue = new int[cells];
+            chainParent = new int[cells];
+            chainVisited = new long[geometry.words];
+        }
+        for (int w = 0; w < geometry.words; w++) chainVisited[w] = 0L;
+        if (from < 0 || from >= cells || !isOccupied(from)) return 0;
+
+        int head = 0;
+        int tail = 0;
+        chainQueue[tail++] = from;
+        setBit(chainVisited, from);
+        while (head < tail) {
+            int cell = chainQueue[head++];
+            int base = cell * DIRECTIONS;
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int to = jumpLanding[base + d];
+                if (to < 0 || testBit(chainVisited, to)) continue;
+                int over = neighbour[base + d];
+                if (over == from || !isOccupied(over) || isOccupied(to)) continue;
+                setBit(chainVisited, to);
+                chainParent[to] = cell;
+                chainQueue[tail++] = to;
+                if (to == target) return tail - 1;
             }
         }
-        return false;
+        return tail - 1;
+    }
+
+    /** Um salto de {@code a} para {@code b}, com {@code origin} (a casa de partida da peça) considerada vazia. */
+    private boolean isJumpFromTo(int a, int b, int origin) {
+        if (a < 0 || a >= cells || b < 0 || b >= cells) return false;
+        int dr = rowOf(b) - rowOf(a);
+        int dc = colOf(b) - colOf(a);
+        if ((dr != 0 && Math.abs(dr) != 2) || (dc != 0 && Math.abs(dc) != 2) || (dr == 0 && dc == 0)) return false;
+        int over = index(rowOf(a) + dr / 2, colOf(a) + dc / 2);
+        return over != origin && isOccupied(over) && (b == origin || !isOccupied(b));
     }
 
-    // --- MÉTODOS AUXILIARES (sem alterações) ---
-    
+    // --- MÉTODOS AUXILIARES ---
+
     public Piece getPieceAt(int row, int col) {
-        if (isValidCoordinate(row, col)) return grid[row][col];
-        return null;
+        if (!isValidCoordinate(row, col)) return null;
+        return PIECES[ownerOf(index(row, col))];
     }
 
     public void performMove(int startRow, int startCol, int endRow, int endCol) {
-        if (getPieceAt(startRow, startCol) == null) return;
-        Piece piece = grid[startRow][startCol];
-        grid[startRow][startCol] = null;
-        grid[endRow][endCol] = piece;
+        if (!isValidCoordinate(startRow, startCol) || !isValidCoordinate(endRow, endCol)) return;
+        performMove(index(startRow, startCol), index(endRow, endCol));
     }
 
-    private boolean isValidCoordinate(int row, int col) {
-        return row >= 0 && row < SIZE && col >= 0 && col < SIZE;
+    /**
+     * Move a peça de {@code from} para {@code to} (índices compactados) sem validar a jogada.
+     * Aplicar o movimento inverso desfaz exatamente este, incluindo o hash e os contadores.
+     */
+    public void performMove(int from, int to) {
+        int owner = ownerOf(from) - 1;
+        if (owner < 0) return;
+        clearBit(occupancy[owner], from);
+        setBit(occupancy[owner], to);
+        clearBit(occupied, from);
+        setBit(occupied, to);
+        hash ^= geometry.zobrist[owner][from] ^ geometry.zobrist[owner][to];
+
+        boolean[] inTarget = geometry.inTargetCamp[owner];
+        if (inTarget[from]) piecesHome[owner]--;
+        if (inTarget[to]) piecesHome[owner]++;
+        int[] distance = geometry.distanceToTarget[owner];
+        distanceRemaining[owner] += distance[to] - distance[from];
     }
-    
-    public boolean checkForWinner(int player) {
-        if (player == 1) {
-            if (getPieceAt(SIZE-1, SIZE-1) == null || getPieceAt(SIZE-1, SIZE-1).getPlayerId() != 1) return false; if (getPieceAt(SIZE-1, SIZE-2) == null || getPieceAt(SIZE-1, SIZE-2).getPlayerId() != 1) return false; if (getPieceAt(SIZE-1, SIZE-3) == null || getPieceAt(SIZE-1, SIZE-3).getPlayerId() != 1) return false; if (getPieceAt(SIZE-1, SIZE-4) == null || getPieceAt(SIZE-1, SIZE-4).getPlayerId() != 1) return false; if (getPieceAt(SIZE-1, SIZE-5) == null || getPieceAt(SIZE-1, SIZE-5).getPlayerId() != 1) return false; if (getPieceAt(SIZE-2, SIZE-1) == null || getPieceAt(SIZE-2, SIZE-1).getPlayerId() != 1) return false; if (getPieceAt(SIZE-2, SIZE-2) == null || getPieceAt(SIZE-2, SIZE-2).getPlayerId() != 1) return false; if (getPieceAt(SIZE-2, SIZE-3) == null || getPieceAt(SIZE-2, SIZE-3).getPlayerId() != 1) return false; if (getPieceAt(SIZE-2, SIZE-4) == null || getPieceAt(SIZE-2, SIZE-4).getPlayerId() != 1) return false; if (getPieceAt(SIZE-3, SIZE-1) == null || getPieceAt(SIZE-3, SIZE-1).getPlayerId() != 1) return false; if (getPieceAt(SIZE-3, SIZE-2) == null || getPieceAt(SIZE-3, SIZE-2).getPlayerId() != 1) return false; if (getPieceAt(SIZE-3, SIZE-3) == null || getPieceAt(SIZE-3, SIZE-3).getPlayerId() != 1) return false; if (getPieceAt(SIZE-4, SIZE-1) == null || getPieceAt(SIZE-4, SIZE-1).getPlayerId() != 1) return false; if (getPieceAt(SIZE-4, SIZE-2) == null || getPieceAt(SIZE-4, SIZE-2).getPlayerId() != 1) return false; if (getPieceAt(SIZE-5, SIZE-1) == null || getPieceAt(SIZE-5, SIZE-1).getPlayerId() != 1) return false;
-            return true;
-        } else {
-            if (getPieceAt(0, 0) == null || getPieceAt(0, 0).getPlayerId() != 2) return false; if (getPieceAt(0, 1) == null || getPieceAt(0, 1).getPlayerId() != 2) return false; if (getPieceAt(0, 2) == null || getPieceAt(0, 2).getPlayerId() != 2) return false; if (getPieceAt(0, 3) == null || getPieceAt(0, 3).getPlayerId() != 2) return false; if (getPieceAt(0, 4) == null || getPieceAt(0, 4).getPlayerId() != 2) return false; if (getPieceAt(1, 0) == null || getPieceAt(1, 0).getPlayerId() != 2) return false; if (getPieceAt(1, 1) == null || getPieceAt(1, 1).getPlayerId() != 2) return false; if (getPieceAt(1, 2) == null || getPieceAt(1, 2).getPlayerId() != 2) return false; if (getPieceAt(1, 3) == null || getPieceAt(1, 3).getPlayerId() != 2) return false; if (getPieceAt(2, 0) == null || getPieceAt(2, 0).getPlayerId() != 2) return false; if (getPieceAt(2, 1) == null || getPieceAt(2, 1).getPlayerId() != 2) return false; if (getPieceAt(2, 2) == null || getPieceAt(2, 2).getPlayerId() != 2) return false; if (getPieceAt(3, 0) == null || getPieceAt(3, 0).getPlayerId() != 2) return false; if (getPieceAt(3, 1) == null || getPieceAt(3, 1).getPlayerId() != 2) return false; if (getPieceAt(4, 0) == null || getPieceAt(4, 0).getPlayerId() != 2) return false;
-            return true;
+
+    /** Id do jogador dono da peça em {@code cell}, ou 0 se a casa estiver vazia. */
+    public int ownerOf(int cell) {
+        if (!testBit(occupied, cell)) return 0;
+        for (int player = 0; player < occupancy.length; player++) {
+            if (testBit(occupancy[player], cell)) return player + 1;
         }
+        return 0;
+    }
+
+    /** Escreve em {@code out} as casas ocupadas pelo jogador e devolve quantas são. */
+    public int piecesOf(int player, int[] out) {
+        long[] bits = occupancy[player - 1];
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                out[count++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+
+    /** Distância (em casas) de {@code cell} até o acampamento de destino do jogador. */
+    public int distanceToTarget(int player, int cell) {
+        return geometry.distanceToTarget[player - 1][cell];
+    }
+
+    /** Quantas peças do jogador já estão no acampamento de destino. O(1). */
+    public int piecesHome(int player) {
+        return piecesHome[player - 1];
+    }
+
+    /** Soma das distâncias (em casas) das peças do jogador até o acampamento de destino. O(1). */
+    public int distanceRemaining(int player) {
+        return distanceRemaining[player - 1];
+    }
+
+    /** Hash de Zobrist de 64 bits da ocupação atual; atualizado em O(1) a cada movimento. */
+    public long hash() {
+        return hash;
+    }
+
+    /** Chave a combinar (XOR) com {@link #hash()} quando a vez de jogar faz parte da identidade da posição. */
+    public long turnKey(int player) {
+        return geometry.turnKeys[player];
+    }
+
+    public boolean isValidCoordinate(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size;
+    }
+
+    private boolean isOccupied(int cell) {
+        return testBit(occupied, cell);
+    }
+
+    private static void setBit(long[] bits, int cell) { bits[cell >>> 6] |= 1L << cell; }
+    private static void clearBit(long[] bits, int cell) { bits[cell >>> 6] &= ~(1L << cell); }
+    private static boolean testBit(long[] bits, int cell) { return (bits[cell >>> 6] & (1L << cell)) != 0; }
+
+    /**
+     * O jogador vence quando todas as casas do acampamento de destino estão ocupadas por peças suas.
+     * Usa o contador mantido em performMove, sem percorrer o acampamento.
+     */
+    public boolean checkForWinner(int player) {
+        return piecesHome[player - 1] == geometry.getCampSize();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Configuração de um tipo de tabuleiro: tamanho, número de jogadores e forma dos acampamentos.
+ * As tabelas de vizinhança, de salto, de acampamento e as chaves de Zobrist são calculadas
+ * uma única vez por geometria e partilhadas por todos os {@link Board} que a usam.
+ */
+public final class Geometry {
+    // As 8 direções como (dLinha, dColuna). Declaradas antes das instâncias, que as usam ao serem criadas.
+    static final int DIRECTIONS = 8;
+    private static final int[] DIR_ROW = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] DIR_COL = { -1, 0, 1, -1, 1, -1, 0, 1 };
+
+    /** Tabuleiro clássico do projeto: 10x10, 2 jogadores, acampamentos de 15 casas. */
+    public static final Geometry CLASSIC = new Geometry("10x10", 10, 2, new int[] { 5, 4, 3, 2, 1 });
+    /** Halma tradicional 16x16 para 2 jogadores, acampamentos de 19 casas. */
+    public static final Geometry HALMA_16 = new Geometry("16x16", 16, 2, new int[] { 5, 5, 4, 3, 2 });
+    /** Halma tradicional 16x16 para 4 jogadores, um acampamento de 19 casas em cada canto. */
+    public static final Geometry HALMA_16_FOUR = new Geometry("16x16-4", 16, 4, new int[] { 5, 5, 4, 3, 2 });
+
+    private static final Geometry[] ALL = { CLASSIC, HALMA_16, HALMA_16_FOUR };
+
+    private final String id;
+    final int size;
+    final int cells;
+    final int words;
+    final int playerCount;
+
+    // Para cada casa e direção: a casa vizinha (que também é a casa saltada) e a casa
+    // de aterragem do salto, ou -1 quando saem do tabuleiro. Índice = casa * 8 + direção.
+    final int[] neighbour;
+    final int[] jumpLanding;
+
+    // startCamp[p] = casas iniciais do jogador p + 1; targetPlayer[p] = dono do acampamento de destino.
+    final int[][] startCamp;
+    final int[] targetPlayer;
+    final boolean[][] inTargetCamp;
+    // Distância (Chebyshev) de cada casa até o acampamento de destino de cada jogador; 0 dentro dele.
+    final int[][] distanceToTarget;
+
+    // Chaves de Zobrist: uma por (jogador, casa) e uma por jogador da vez.
+    final long[][] zobrist;
+    final long[] turnKeys;
+
+    /**
+     * @param campRowLengths quantas casas cada linha do acampamento ocupa a partir do canto;
+     *                       a tabela é espelhada no canto de cada jogador.
+     */
+    private Geometry(String id, int size, int playerCount, int[] campRowLengths) {
+        this.id = id;
+        this.size = size;
+        this.cells = size * size;
+        this.words = (cells + 63) / 64;
+        this.playerCount = playerCount;
+
+        neighbour = new int[cells * DIRECTIONS];
+        jumpLanding = new int[cells * DIRECTIONS];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            for (int d = 0; d < DIRECTIONS; d++) {
+                neighbour[cell * DIRECTIONS + d] = cellOrNone(row + DIR_ROW[d], col + DIR_COL[d]);
+                jumpLanding[cell * DIRECTIONS + d] = cellOrNone(row + 2 * DIR_ROW[d], col + 2 * DIR_COL[d]);
+            }
+        }
+
+        // Cantos: jogador 1 em cima à esquerda, 2 em baixo à direita, 3 em cima à direita,
+        // 4 em baixo à esquerda. Cada jogador vai para o canto oposto.
+        int campSize = 0;
+        for (int length : campRowLengths) campSize += length;
+        startCamp = new int[playerCount][campSize];
+        targetPlayer = new int[playerCount];
+        for (int player = 0; player < playerCount; player++) {
+            boolean flipRows = player == 1 || player == 3;
+            boolean flipCols = player == 1 || player == 2;
+            int i = 0;
+            for (int r = 0; r < campRowLengths.length; r++) {
+                for (int c = 0; c < campRowLengths[r]; c++) {
+                    int row = flipRows ? size - 1 - r : r;
+                    int col = flipCols ? size - 1 - c : c;
+                    startCamp[player][i++] = row * size + col;
+                }
+            }
+            targetPlayer[player] = player ^ 1;
+        }
+
+        inTargetCamp = new boolean[playerCount][cells];
+        distanceToTarget = new int[playerCount][cells];
+        for (int player = 0; player < playerCount; player++) {
+            int[] target = startCamp[targetPlayer[player]];
+            for (int cell : target) inTargetCamp[player][cell] = true;
+            for (int cell = 0; cell < cells; cell++) {
+                int best = Integer.MAX_VALUE;
+                for (int goal : target) {
+                    int distance = Math.max(Math.abs(cell / size - goal / size), Math.abs(cell % size - goal % size));
+                    best = Math.min(best, distance);
+                }
+                distanceToTarget[player][cell] = best;
+            }
+        }
+
+        // Semente fixa por geometria para que a mesma posição tenha o mesmo hash em qualquer processo.
+        SplittableRandom random = new SplittableRandom(0x4A1_3A5EEDL + id.hashCode());
+        zobrist = new long[playerCount][cells];
+        for (int player = 0; player < playerCount; player++) {
+            for (int cell = 0; cell < cells; cell++) zobrist[player][cell] = random.nextLong();
+        }
+        turnKeys = new long[playerCount + 1];
+        for (int player = 1; player <= playerCount; player++) turnKeys[player] = random.nextLong();
+    }
+
+    private int cellOrNone(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size ? row * size + col : -1;
+    }
+
+    /** Procura uma geometria pelo identificador usado no protocolo; devolve null se não existir. */
+    public static Geometry byId(String id) {
+        for (Geometry geometry : ALL) {
+            if (geometry.id.equals(id)) return geometry;
+        }
+        return null;
+    }
+
+    public String getId() { return id; }
+    public int getSize() { return size; }
+    public int getPlayerCount() { return playerCount; }
+    public int getCampSize() { return startCamp[0].length; }
+
+    /** Jogador que joga depois de {@code player} (1..playerCount). */
+    public int nextPlayer(int player) {
+        return player % playerCount + 1;
+    }
+}
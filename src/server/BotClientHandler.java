@@ -0,0 +1,154 @@
+package server;
+
+import engine.Search;
+import game.Board;
+import game.Geometry;
+import shared.Log;
+import shared.Protocol;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adversário controlado pelo servidor. Entra na {@link GameSession} como um segundo
+ * {@link ClientHandler} virtual: recebe as mesmas mensagens que um cliente, mantém o seu
+ * próprio tabuleiro e responde com MOVE ou MOVE_PATH quando chega a sua vez.
+ *
+ * As buscas correm num pool pequeno e partilhado por todos os bots, com prazo fixo por lance;
+ * cada thread do pool reutiliza uma única {@link Search}, por isso a memória total não cresce
+ * com o número de partidas contra bots.
+ */
+public class BotClientHandler extends ClientHandler {
+    private static final Log LOG = Log.get("bot");
+    private static final long MOVE_BUDGET_MILLIS = Long.getLong("halma.bot.moveMillis", 300);
+    private static final int TABLE_BITS = Integer.getInteger("halma.bot.tableBits", 16);
+    private static final int SEARCH_THREADS = Integer.getInteger("halma.bot.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final ExecutorService searchPool = Executors.newFixedThreadPool(SEARCH_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "halma-bot-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static final ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(TABLE_BITS));
+
+    // Protege board e playerId; sendMessage é chamado pela thread da sessão, que pode ser virtual.
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private Board board = new Board();
+    private int playerId;
+    private volatile boolean gameOver = false;
+
+    public BotClientHandler() {
+        setPlayerName("Halma Bot");
+    }
+
+    /** Só os tabuleiros de 2 jogadores são suportados pela busca alfa-beta. */
+    public static boolean supports(Geometry geometry) {
+        return geometry.getPlayerCount() == 2;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        stateLock.lock();
+        try {
+            handleMessage(message);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private void handleMessage(String message) {
+        String[] parts = message.split(Protocol.SEPARATOR, 2);
+        String data = parts.length > 1 ? parts[1] : "";
+
+        switch (parts[0]) {
+            case Protocol.WELCOME:
+                playerId = Integer.parseInt(data);
+                break;
+            case Protocol.BOARD_SETUP:
+                Geometry geometry = Geometry.byId(data);
+                if (geometry != null) board = new Board(geometry);
+                break;
+            case Protocol.VALID_MOVE:
+            case Protocol.JUMP_MOVE:
+            case Protocol.OPPONENT_MOVED:
+                String[] coords = data.split(Protocol.SEPARATOR);
+                board.performMove(Integer.parseInt(coords[0]), Integer.parseInt(coords[1]),
+                        Integer.parseInt(coords[2]), Integer.parseInt(coords[3]));
+                break;
+            case Protocol.CHAIN_JUMP_OFFER:
+                // O bot envia cadeias inteiras com MOVE_PATH; se mesmo assim receber uma oferta, encerra a cadeia.
+                searchPool.execute(() -> submit(Protocol.END_CHAIN_JUMP));
+                break;
+            case Protocol.SET_TURN:
+                if ("YOUR_TURN".equals(data) && !gameOver) searchPool.execute(this::playTurn);
+                break;
+            case Protocol.ERROR:
+                // Uma jogada recusada significa que o tabuleiro do bot divergiu; desiste para não travar a partida.
+                LOG.warn("Jogada recusada pelo servidor (", data, "). Desistindo.");
+                searchPool.execute(() -> submit(Protocol.FORFEIT));
+                break;
+            case Protocol.VICTORY:
+            case Protocol.DEFEAT:
+            case Protocol.OPPONENT_FORFEIT:
+            case Protocol.GAME_OVER_STATS:
+                gameOver = true;
+                break;
+        }
+    }
+
+    private void playTurn() {
+        if (gameOver) return;
+        Board snapshot;
+        int me;
+        stateLock.lock();
+        try {
+            snapshot = new Board(board);
+            me = playerId;
+        } finally {
+            stateLock.unlock();
+        }
+
+        Search search = searches.get();
+        int move = search.findBestMove(snapshot, me, MOVE_BUDGET_MILLIS);
+        if (move == Search.NO_MOVE) {
+            submit(Protocol.FORFEIT);
+            return;
+        }
+
+        int from = Search.from(move);
+        int to = Search.to(move);
+        int[] path = new int[snapshot.getCellCount()];
+        int length = snapshot.findJumpPath(from, to, path);
+        StringBuilder message;
+        if (length > 0 && !isStep(snapshot, from, to)) {
+            message = new StringBuilder(Protocol.MOVE_PATH);
+            for (int i = 0; i < length; i++) {
+                message.append(Protocol.SEPARATOR).append(snapshot.rowOf(path[i]))
+                       .append(Protocol.SEPARATOR).append(snapshot.colOf(path[i]));
+            }
+        } else {
+            message = new StringBuilder(Protocol.MOVE)
+                    .append(Protocol.SEPARATOR).append(snapshot.rowOf(from))
+                    .append(Protocol.SEPARATOR).append(snapshot.colOf(from))
+                    .append(Protocol.SEPARATOR).append(snapshot.rowOf(to))
+                    .append(Protocol.SEPARATOR).append(snapshot.colOf(to));
+        }
+        submit(message.toString());
+    }
+
+    private static boolean isStep(Board board, int from, int to) {
+        return Math.abs(board.rowOf(from) - board.rowOf(to)) <= 1 && Math.abs(board.colOf(from) - board.colOf(to)) <= 1;
+    }
+
+    private void submit(String message) {
+        GameSession session = getGameSession();
+        if (session != null && !gameOver) {
+            session.processMessage(message, this);
+        }
+    }
+}
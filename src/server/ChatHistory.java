@@ -0,0 +1,41 @@
+package server;
+
+import java.util.function.Consumer;
+
+/**
+ * Histórico de conversa de uma partida com tamanho fixo: guarda as últimas {@code capacity}
+ * mensagens num anel e conta as que foram descartadas para lhes dar lugar. Só é usado na
+ * thread da sessão, por isso não tem sincronização.
+ */
+final class ChatHistory {
+    private final String[] lines;
+    private int next = 0;   // posição onde entra a próxima mensagem
+    private int size = 0;
+    private long dropped = 0;
+
+    ChatHistory(int capacity) {
+        this.lines = new String[Math.max(1, capacity)];
+    }
+
+    void add(String line) {
+        if (size == lines.length) dropped++;
+        else size++;
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Mensagens que já saíram do anel. */
+    long dropped() {
+        return dropped;
+    }
+
+    /** Percorre as mensagens guardadas da mais antiga para a mais recente. */
+    void forEach(Consumer<String> action) {
+        int first = (next - size + lines.length) % lines.length;
+        for (int i = 0; i < size; i++) action.accept(lines[(first + i) % lines.length]);
+    }
+}
@@ -1,68 +1,370 @@
 package server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jdk.net.ExtendedSocketOptions;
+import shared.BinaryCodec;
+import shared.Log;
+import shared.Protocol;
+
+public class ClientHandler implements Runnable {
+    private static final Log LOG = Log.get("net");
+    private static final Log PROTOCOL_LOG = Log.get("protocol");
+    // Tempo máximo que uma mensagem retida por holdOutput() pode esperar pelo envio; 0 = só no fim do lote.
+    static final long MAX_FLUSH_DELAY_MILLIS = Long.getLong("halma.net.maxFlushDelayMillis", 10);
+    // Uma ligação registada que passa este tempo sem enviar nada é desligada (0 = nunca). Calada há
+    // um terço do prazo, recebe PING do servidor. Só vale para clientes que já responderam a um PING:
+    // os anteriores aos batimentos ignoram-no, e as suas ligações mortas ficam a cargo do keepalive
+    // do TCP (ver enableKeepAlive).
+    static final long IDLE_TIMEOUT_MILLIS = Long.getLong("halma.net.idleSeconds", 60) * 1000;
+    private static final long HEARTBEAT_MILLIS = IDLE_TIMEOUT_MILLIS / 3;
+    // Bytes por escrever a partir dos quais a ligação é dada como perdida (0 = sem limite): um cliente
+    // que não lê o socket não pode acumular respostas na memória do servidor. Vale para jogadores e
+    // espectadores; a estes a sessão já salta eventos antes (halma.spectator.maxBacklogKb).
+    static final long MAX_OUTPUT_BACKLOG = Long.getLong("halma.net.maxBacklogKb", 1024) * 1024;
 
-public class ClientHandler extends Thread {
     private final Socket clientSocket;
-    private PrintWriter out;
     private BufferedReader in;
-    private GameSession gameSession;
+    private volatile GameSession gameSession;
     private String playerName = "Jogador Anônimo";
+    private long waitingSince;
+    private int rating;
+    private volatile boolean leftQueue = false;
+    // Depois da negociação (CODEC=binary) lê e escreve tramas de BinaryCodec em vez de linhas.
+    private volatile boolean binaryCodec = false;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Quem envia só codifica a mensagem e junta-a ao lote; nunca toca no socket. O lote passa para
+    // a fila de saída em flushOutput(): logo a seguir se nenhum lote estiver aberto, ou no fim do
+    // último lote (ver GameSession), ou ao fim de MAX_FLUSH_DELAY_MILLIS. A fila é escrita por uma
+    // tarefa de HalmaServer.writeExecutor() (writeOutbound), por isso um socket lento não prende a
+    // sessão, e uma ligação sem nada por enviar não ocupa thread de escrita.
+    private final AtomicInteger heldBatches = new AtomicInteger();
+    private final AtomicBoolean delayedFlushQueued = new AtomicBoolean();
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(); // protegido por writeLock
+    private final ConcurrentLinkedQueue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+    private final AtomicBoolean backlogExceeded = new AtomicBoolean();
+    private OutputStream rawOutput; // só usado pela tarefa de escrita
+    private volatile long lastReceived = System.currentTimeMillis();
+    // O cliente já enviou PING ou PONG, por isso o seu silêncio significa mesmo uma ligação morta.
+    private volatile boolean speaksHeartbeat = false;
+
+    // Partida que esta ligação assiste como espectador (ver GameSession.addSpectator).
+    private volatile GameSession watching;
+    // Bytes enviados mas ainda não escritos no socket; diz à sessão se um espectador está atrasado.
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private InputStream countedInput;
+    private OutputStream countedOutput;
 
     public ClientHandler(Socket socket) {
         this.clientSocket = socket;
     }
 
+    /** Para participantes sem socket (ex.: {@link BotClientHandler}), que tratam sendMessage por conta própria. */
+    protected ClientHandler() {
+        this.clientSocket = null;
+    }
+
     public void setPlayerName(String name) { this.playerName = name; }
     public String getPlayerName() { return playerName; }
     public void setGameSession(GameSession gameSession) { this.gameSession = gameSession; }
+    protected GameSession getGameSession() { return gameSession; }
+    void setWaitingSince(long millis) { this.waitingSince = millis; }
+    long getWaitingSince() { return waitingSince; }
+    void setRating(int rating) { this.rating = rating; }
+    int getRating() { return rating; }
+    GameSession getWatching() { return watching; }
+    void stopWatching() { this.watching = null; }
+    void markLeftQueue() { this.leftQueue = true; }
+    boolean hasLeftQueue() { return leftQueue; }
+
+    /** Se a ligação ainda está aberta (do nosso lado); participantes sem socket estão sempre ligados. */
+    boolean isConnected() {
+        return clientSocket == null || !clientSocket.isClosed();
+    }
+
+    long pendingOutputBytes() {
+        return pendingBytes.get();
+    }
+
+    protected void addPendingBytes(long bytes) {
+        pendingBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Conta {@code bytes} como por escrever. Se a ligação passar {@link #MAX_OUTPUT_BACKLOG}, é
+     * desligada (a sessão recebe a desconexão como de costume) e a mensagem é descartada.
+     *
+     * @return se a mensagem pode seguir para a fila de saída
+     */
+    protected boolean reserveOutput(int bytes) {
+        long pending = pendingBytes.addAndGet(bytes);
+        if (MAX_OUTPUT_BACKLOG <= 0 || pending <= MAX_OUTPUT_BACKLOG) return true;
+        pendingBytes.addAndGet(-bytes);
+        if (backlogExceeded.compareAndSet(false, true)) {
+            LOG.warn(playerName, " não lê o que lhe é enviado. Desconectando com ", pending / 1024 + " KB por escrever.");
+            shutdown();
+        }
+        return false;
+    }
+
+    /** Passa a ligação a espectador da sessão; o que lhe é enviado segue pela mesma fila de saída. */
+    void startWatching(GameSession session) {
+        watching = session;
+    }
+
+    /** Envia uma mensagem partilhada por vários espectadores, sem a voltar a codificar. */
+    void sendShared(SharedFrame frame) {
+        if (clientSocket == null) {
+            sendMessage(frame.message());
+            return;
+        }
+        PROTOCOL_LOG.trace("SERVER -> ", playerName, ": ", frame.message());
+        write(frame.bytes(binaryCodec));
+    }
+
+    /**
+     * Tarefa de escrita da ligação; writerScheduled garante que só há uma de cada vez, por isso é a
+     * única que escreve no socket. Tira os lotes da fila e escreve-os, força o envio quando a fila
+     * fica vazia e termina aí, até o próximo flushOutput() a voltar a agendar.
+     */
+    private void writeOutbound() {
+        try {
+            if (rawOutput == null) rawOutput = new BufferedOutputStream(socketOutput());
+            do {
+                byte[] bytes;
+                while ((bytes = outbound.poll()) != null) {
+                    rawOutput.write(bytes);
+                    pendingBytes.addAndGet(-bytes.length);
+                }
+                rawOutput.flush();
+                writerScheduled.set(false);
+                // Um lote que entrou depois do último poll() pode ter visto a tarefa ainda agendada.
+            } while (!outbound.isEmpty() && writerScheduled.compareAndSet(false, true));
+        } catch (IOException e) {
+            LOG.debug("Erro ao escrever para " + playerName + ": ", e.getMessage());
+            outbound.clear();
+            shutdown();
+        }
+    }
+
+    /** A ligação fechou: avisa a sessão em que joga ou que assiste, ou tira o cliente da fila de espera. */
+    protected void connectionLost() {
+        GameSession session = gameSession;
+        if (session != null) session.handleDisconnect(this);
+        GameSession watched = watching;
+        if (watched != null) watched.removeSpectator(this);
+        // Sem efeito se já estiver numa partida.
+        HalmaServer.leaveQueue(this);
+    }
+
+    /**
+     * Liga o keepalive do TCP no socket aceite: o sistema sonda a ligação calada e fecha-a se o outro
+     * lado sumiu, o que também apanha as ligações meio abertas de clientes que nunca falam PING. Onde
+     * o sistema o permite, a primeira sonda sai ao fim do prazo de inatividade, e uma ligação morta
+     * cai ao fim de cerca do dobro desse prazo, em vez das duas horas habituais.
+     */
+    static void enableKeepAlive(Socket socket) throws IOException {
+        socket.setKeepAlive(true);
+        if (IDLE_TIMEOUT_MILLIS <= 0 || !socket.supportedOptions().contains(ExtendedSocketOptions.TCP_KEEPIDLE)) return;
+        int idleSeconds = (int) Math.max(1, IDLE_TIMEOUT_MILLIS / 1000);
+        socket.setOption(ExtendedSocketOptions.TCP_KEEPIDLE, idleSeconds);
+        socket.setOption(ExtendedSocketOptions.TCP_KEEPINTERVAL, Math.max(1, idleSeconds / 3));
+        socket.setOption(ExtendedSocketOptions.TCP_KEEPCOUNT, 3);
+    }
+
+    /** Regista que chegou algo do cliente; adia a deteção de inatividade. */
+    protected void markReceived() {
+        lastReceived = System.currentTimeMillis();
+    }
+
+    /**
+     * Começa a vigiar a inatividade da ligação, na {@link TimerWheel}. Chamado quando o cliente se
+     * regista; antes disso vale o prazo do SET_NAME.
+     */
+    void startHeartbeat() {
+        if (IDLE_TIMEOUT_MILLIS > 0) TimerWheel.shared().schedule(this::checkIdle, HEARTBEAT_MILLIS);
+    }
+
+    /**
+     * Corre na thread da roda a cada HEARTBEAT_MILLIS: desliga a ligação se o prazo de inatividade
+     * passou e o cliente fala PONG, senão envia PING se ela está calada. Uma ligação meio aberta (o
+     * outro lado sumiu sem fechar o TCP) é assim desligada, e a sessão recebe a desconexão como de
+     * costume. O PING só é posto na fila de saída da ligação: a roda nunca espera por um socket.
+     */
+    private void checkIdle() {
+        if (!isConnected()) return;
+        long idle = System.currentTimeMillis() - lastReceived;
+        if (idle >= IDLE_TIMEOUT_MILLIS && speaksHeartbeat) {
+            LOG.info("Sem resposta de " + playerName + " há " + idle / 1000 + "s. Desconectando.");
+            shutdown();
+            return;
+        }
+        if (idle >= HEARTBEAT_MILLIS) sendMessage(Protocol.PING);
+        TimerWheel.shared().schedule(this::checkIdle, HEARTBEAT_MILLIS);
+    }
+
+    /** Trata uma mensagem recebida depois do SET_NAME: os batimentos ficam aqui, o resto vai para a sessão. */
+    void onMessage(String message) {
+        Metrics.messageIn();
+        if (message.equals(Protocol.PING)) {
+            speaksHeartbeat = true;
+            sendMessage(Protocol.PONG);
+            return;
+        }
+        if (message.equals(Protocol.PONG)) {
+            speaksHeartbeat = true;
+            return;
+        }
+        GameSession session = gameSession;
+        if (session != null) session.processMessage(message, this);
+    }
+
+    /**
+     * Passa a ligação para a codificação binária. A confirmação ainda segue em texto; o cliente
+     * só envia tramas depois de a receber, por isso nada do que já foi lido em texto se perde.
+     */
+    void enableBinaryCodec() {
+        if (clientSocket == null) return;
+        // A confirmação já foi codificada em texto; tudo o que for enviado a seguir sai em tramas.
+        sendMessage(Protocol.CODEC + Protocol.SEPARATOR + BinaryCodec.NAME);
+        binaryCodec = true;
+    }
+
+    /**
+     * Abre um lote: as mensagens enviadas até ao {@link #releaseOutput()} correspondente ficam no
+     * buffer e saem juntas, numa só escrita no socket. Os lotes podem ser encaixados.
+     */
+    void holdOutput() {
+        heldBatches.incrementAndGet();
+    }
+
+    /** Fecha um lote aberto por {@link #holdOutput()}; o último a fechar envia o que ficou retido. */
+    void releaseOutput() {
+        if (heldBatches.decrementAndGet() == 0) flushOutput();
+    }
+
+    protected boolean isOutputHeld() {
+        return heldBatches.get() > 0;
+    }
+
+    /**
+     * Chamado depois de reter uma mensagem num lote: garante que ela não espera mais do que
+     * {@link #MAX_FLUSH_DELAY_MILLIS}, mesmo que o lote demore a fechar.
+     */
+    protected void scheduleDelayedFlush() {
+        if (MAX_FLUSH_DELAY_MILLIS > 0 && delayedFlushQueued.compareAndSet(false, true)) {
+            DelayedFlusher.add(this);
+        }
+    }
+
+    /** Passa o lote acumulado para a fila de saída e agenda a escrita; não espera pelo socket. */
+    void flushOutput() {
+        writeLock.lock();
+        try {
+            if (batch.size() == 0) return;
+            // Ainda com o lock, para os lotes entrarem na fila pela ordem em que foram fechados.
+            outbound.add(batch.toByteArray());
+            batch.reset();
+        } finally {
+            writeLock.unlock();
+        }
+        if (writerScheduled.compareAndSet(false, true)) HalmaServer.writeExecutor().execute(this::writeOutbound);
+    }
 
     public BufferedReader getInputStream() throws IOException {
-        if (in == null) in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+        if (in == null) in = new BufferedReader(new InputStreamReader(socketInput(), StandardCharsets.UTF_8));
         return in;
     }
 
-    public PrintWriter getOutputStream() throws IOException {
-        if (out == null) out = new PrintWriter(clientSocket.getOutputStream(), true);
-        return out;
+    // Fluxos do socket com os bytes contados nas Metrics; só existem no modo bloqueante.
+    private InputStream socketInput() throws IOException {
+        if (countedInput == null) countedInput = Metrics.counting(clientSocket.getInputStream());
+        return countedInput;
+    }
+
+    private OutputStream socketOutput() throws IOException {
+        if (countedOutput == null) countedOutput = Metrics.counting(clientSocket.getOutputStream());
+        return countedOutput;
     }
 
     @Override
     public void run() {
         try {
-            getOutputStream();
             getInputStream();
-            if (gameSession == null) sendMessage("INFO:Aguardando oponente...");
+
+            // A primeira linha tem de ser o SET_NAME, e tem prazo para chegar.
+            clientSocket.setSoTimeout(HalmaServer.HANDSHAKE_TIMEOUT_MILLIS);
+            String nameLine = in.readLine();
+            clientSocket.setSoTimeout(0);
+            if (!HalmaServer.registerPlayer(this, nameLine)) {
+                LOG.warn("Primeira mensagem do cliente não foi SET_NAME. Desconectando.");
+                return;
+            }
+
+            InputStream frames = binaryCodec ? new BufferedInputStream(socketInput()) : null;
             String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                if (gameSession != null) {
-                    gameSession.processMessage(inputLine, this);
-                }
+            while ((inputLine = frames != null ? BinaryCodec.readFrame(frames) : in.readLine()) != null) {
+                PROTOCOL_LOG.trace(playerName, " -> SERVER: ", inputLine);
+                markReceived();
+                onMessage(inputLine);
             }
+            LOG.info("Cliente desconectado: ", playerName, " de ", clientSocket.getInetAddress());
+        } catch (SocketTimeoutException e) {
+            LOG.info("Cliente não enviou o SET_NAME a tempo: ", clientSocket.getInetAddress());
         } catch (IOException e) {
-            System.out.println("Cliente desconectado: " + playerName + " (" + clientSocket.getInetAddress() + ")");
-            if (gameSession != null) {
-                gameSession.handleDisconnect(this);
-            }
+            LOG.info("Cliente desconectado: ", playerName, " de ", clientSocket.getInetAddress());
         } finally {
+            // Tanto num erro como num fecho normal da ligação (fim do fluxo): a sessão tem de saber
+            // logo, para guardar o lugar ou terminar a partida.
+            connectionLost();
+            HalmaServer.connectionClosed();
             try {
                 clientSocket.close();
             } catch (IOException e) {
-                e.printStackTrace();
+                LOG.warn("Erro ao fechar o socket de " + playerName, e);
             }
         }
     }
 
+    /** Codifica a mensagem e junta-a ao lote da ligação; pode ser chamado de qualquer thread e não bloqueia. */
     public void sendMessage(String message) {
-        if (out != null) {
-            // Registo para depuração
-            System.out.println("SERVER -> " + playerName + ": " + message);
-            out.println(message);
+        if (clientSocket == null) return;
+        PROTOCOL_LOG.trace("SERVER -> ", playerName, ": ", message);
+        write(binaryCodec ? BinaryCodec.encode(message) : (message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(byte[] bytes) {
+        if (!isConnected() || !reserveOutput(bytes.length)) return;
+        Metrics.messageOut();
+        writeLock.lock();
+        try {
+            batch.write(bytes, 0, bytes.length);
+        } finally {
+            writeLock.unlock();
         }
+        // Verificado depois da escrita: se o lote fechou entretanto, quem o fechou pode não ter visto esta mensagem.
+        if (isOutputHeld()) scheduleDelayedFlush();
+        else flushOutput();
     }
 
     public void shutdown() {
@@ -71,7 +373,36 @@ public class ClientHandler extends Thread {
                 clientSocket.close();
             }
         } catch (IOException e) {
-            System.err.println("Erro durante o desligamento do cliente: " + e.getMessage());
+            LOG.warn("Erro durante o desligamento do cliente: ", e.getMessage());
+        }
+    }
+
+    /**
+     * Thread única que envia, com no máximo {@link #MAX_FLUSH_DELAY_MILLIS} de atraso, o que ficou
+     * retido em lotes ainda abertos. Só arranca quando é precisa pela primeira vez.
+     */
+    private static final class DelayedFlusher {
+        private static final ConcurrentLinkedQueue<ClientHandler> pending = new ConcurrentLinkedQueue<>();
+
+        static {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "halma-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(DelayedFlusher::flushPending, MAX_FLUSH_DELAY_MILLIS, MAX_FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        static void add(ClientHandler handler) {
+            pending.add(handler);
+        }
+
+        private static void flushPending() {
+            ClientHandler handler;
+            while ((handler = pending.poll()) != null) {
+                handler.delayedFlushQueued.set(false);
+                handler.flushOutput();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,429 @@
+package server;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import game.Geometry;
+import shared.Log;
+
+/**
+ * Diário das partidas em curso, só de acréscimo, para sobreviverem a uma queda do servidor.
+ * Cada acontecimento aceite (início, ficha de retoma, lance, fim de cadeia de saltos, conversa,
+ * saída de um jogador numa partida que continua, fim de jogo) é um registo de {@link #RECORD_BYTES}
+ * bytes com CRC, copiado para um segmento mapeado em memória; quando o segmento enche, passa-se
+ * ao seguinte. Escrever é só uma cópia
+ * para a página mapeada: uma queda do processo não perde nada, e a thread "halma-journal" força
+ * os segmentos para o disco a cada {@link #SYNC_MILLIS} (commit em grupo), longe das threads das
+ * sessões. Uma queda do sistema operativo perde no máximo esse intervalo; quem retoma recebe o
+ * estado recuperado num SNAPSHOT, por isso o cliente volta a concordar com o servidor.
+ *
+ * No arranque, {@link #start()} lê os segmentos, devolve as partidas que não terminaram (ver
+ * {@link GameSession#restore}) e passa a escrever num segmento novo. Segmentos anteriores ao
+ * primeiro registo da partida viva mais antiga são apagados. Desligado se {@code halma.journal.dir}
+ * não estiver definido.
+ */
+final class GameJournal {
+    private static final Log LOG = Log.get("journal");
+    private static final String DIRECTORY = System.getProperty("halma.journal.dir", "");
+    static final int RECORD_BYTES = 64;
+    private static final long SEGMENT_BYTES =
+            Math.max(RECORD_BYTES, Long.getLong("halma.journal.segmentMb", 8) * 1024 * 1024 / RECORD_BYTES * RECORD_BYTES);
+    private static final long SYNC_MILLIS = Math.max(1, Long.getLong("halma.journal.syncMillis", 20));
+
+    // Tipos de registo.
+    static final byte START = 1;     // texto: id da geometria
+    static final byte SEAT = 2;      // lugar, texto: nome do jogador
+    static final byte TOKEN = 3;     // lugar, texto: ficha de retoma atual
+    static final byte MOVE = 4;      // lugar, origem, destino, saltos; FLAG_PATH num MOVE_PATH
+    static final byte CHAIN_END = 5; // lugar: END_CHAIN_JUMP aceite
+    static final byte CHAT = 6;      // lugar, texto: linha da conversa
+    static final byte END = 7;       // texto: desfecho (ver Metrics.OUTCOME_*)
+    static final byte LEFT = 8;      // lugar: o jogador saiu e a partida continuou sem ele
+
+    static final byte FLAG_MORE = 1; // o texto continua no registo seguinte da mesma partida
+    static final byte FLAG_PATH = 2;
+
+    // Disposição de um registo; o texto ocupa o resto e é partido em vários registos se não couber.
+    private static final int CRC = 0;
+    private static final int TYPE = 4;
+    private static final int SEAT_OFFSET = 5;
+    private static final int FLAGS = 6;
+    private static final int TEXT_LENGTH = 7;
+    private static final int SESSION = 8;
+    private static final int FROM = 16;
+    private static final int TO = 20;
+    private static final int HOPS = 24;
+    private static final int TEXT = 32;
+    private static final int TEXT_CAPACITY = RECORD_BYTES - TEXT;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static volatile GameJournal instance; // null = diário desligado
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private MappedByteBuffer segment;   // protegido por lock
+    private int segmentIndex;           // protegido por lock
+    private long position;              // protegido por lock
+    private volatile boolean dirty;
+    // Segmentos já cheios à espera de serem forçados pela thread do diário.
+    private final List<MappedByteBuffer> retired = new ArrayList<>(); // protegido por lock
+    // Primeiro segmento com registos de cada partida viva; os anteriores ao menor podem ser apagados.
+    private final Map<Long, Integer> firstSegment = new ConcurrentHashMap<>();
+
+    // Um registo em preparação por thread, para não alocar por acontecimento.
+    private static final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(RECORD_BYTES));
+    private static final ThreadLocal<CRC32> checksums = ThreadLocal.withInitial(CRC32::new);
+
+    /** Uma partida lida do diário que ainda não tinha terminado. */
+    static final class RecoveredGame {
+        final long id;
+        final Geometry geometry;
+        final String[] names;
+        final List<Event> events = new ArrayList<>();
+        final int firstSegment;
+
+        RecoveredGame(long id, Geometry geometry, int firstSegment) {
+            this.id = id;
+            this.geometry = geometry;
+            this.names = new String[geometry.getPlayerCount()];
+            this.firstSegment = firstSegment;
+        }
+    }
+
+    /** Um acontecimento a repetir na sessão recuperada, já com o texto reconstituído. */
+    static final class Event {
+        final byte type;
+        final int seat;
+        final int from;
+        final int to;
+        final int hops;
+        final boolean path;
+        final String text;
+
+        Event(byte type, int seat, int from, int to, int hops, boolean path, String text) {
+            this.type = type;
+            this.seat = seat;
+            this.from = from;
+            this.to = to;
+            this.hops = hops;
+            this.path = path;
+            this.text = text;
+        }
+    }
+
+    private GameJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Abre o diário, se estiver configurado: recupera as partidas por terminar e arranca a escrita
+     * num segmento novo. Chamado uma vez, antes de o servidor aceitar ligações.
+     */
+    static List<RecoveredGame> start() {
+        if (DIRECTORY.isEmpty()) return new ArrayList<>();
+        GameJournal journal = new GameJournal(Paths.get(DIRECTORY));
+        try {
+            Files.createDirectories(journal.directory);
+            List<RecoveredGame> games = journal.recover();
+            journal.lock.lock();
+            try {
+                journal.openSegment(journal.segmentIndex + 1);
+            } finally {
+                journal.lock.unlock();
+            }
+            journal.deleteUnneededSegments();
+            Thread syncer = new Thread(journal::syncLoop, "halma-journal");
+            syncer.setDaemon(true);
+            syncer.start();
+            instance = journal;
+            LOG.info("Diário de partidas em ", journal.directory.toAbsolutePath(), ": ", games.size() + " partida(s) por terminar.");
+            return games;
+        } catch (IOException e) {
+            LOG.error("Não foi possível abrir o diário de partidas em " + DIRECTORY + "; as partidas não sobreviverão a uma queda", e);
+            return new ArrayList<>();
+        }
+    }
+
+    static boolean enabled() {
+        return instance != null;
+    }
+
+    // --- Escrita; pode ser chamada de qualquer thread, e não faz nada com o diário desligado ---
+
+    static void started(long session, Geometry geometry, String[] names) {
+        GameJournal journal = instance;
+        if (journal == null) return;
+        journal.firstSegment.putIfAbsent(session, journal.currentSegment());
+        journal.appendText(START, session, 0, geometry.getId());
+        for (int i = 0; i < names.length; i++) journal.appendText(SEAT, session, i, names[i]);
+    }
+
+    static void token(long session, int seat, String token) {
+        GameJournal journal = instance;
+        if (journal != null) journal.appendText(TOKEN, session, seat, token);
+    }
+
+    static void move(long session, int seat, int from, int to, int hops, boolean path) {
+        GameJournal journal = instance;
+        if (journal == null) return;
+        ByteBuffer record = header(MOVE, session, seat, path ? FLAG_PATH : 0);
+        record.putInt(FROM, from).putInt(TO, to).putInt(HOPS, hops);
+        journal.append(record);
+    }
+
+    static void chainEnded(long session, int seat) {
+        GameJournal journal = instance;
+        if (journal != null) journal.append(header(CHAIN_END, session, seat, 0));
+    }
+
+    static void chat(long session, int seat, String line) {
+        GameJournal journal = instance;
+        if (journal != null) journal.appendText(CHAT, session, seat, line);
+    }
+
+    static void left(long session, int seat) {
+        GameJournal journal = instance;
+        if (journal != null) journal.append(header(LEFT, session, seat, 0));
+    }
+
+    /** A partida terminou: deixa de ser recuperada e deixa de prender os seus segmentos. */
+    static void ended(long session, String outcome) {
+        GameJournal journal = instance;
+        if (journal == null) return;
+        journal.appendText(END, session, 0, outcome);
+        journal.firstSegment.remove(session);
+    }
+
+    /** Mantém os segmentos de uma partida recuperada até ela terminar. */
+    static void adopt(RecoveredGame game) {
+        GameJournal journal = instance;
+        if (journal != null) journal.firstSegment.putIfAbsent(game.id, game.firstSegment);
+    }
+
+    private static ByteBuffer header(byte type, long session, int seat, int flags) {
+        ByteBuffer record = scratch.get();
+        Arrays.fill(record.array(), (byte) 0);
+        record.put(TYPE, type).put(SEAT_OFFSET, (byte) seat).put(FLAGS, (byte) flags).putLong(SESSION, session);
+        return record;
+    }
+
+    private void appendText(byte type, long session, int seat, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        do {
+            int length = Math.min(TEXT_CAPACITY, bytes.length - offset);
+            boolean more = offset + length < bytes.length;
+            ByteBuffer record = header(type, session, seat, more ? FLAG_MORE : 0);
+            record.put(TEXT_LENGTH, (byte) length);
+            System.arraycopy(bytes, offset, record.array(), TEXT, length);
+            append(record);
+            offset += length;
+        } while (offset < bytes.length);
+    }
+
+    private void append(ByteBuffer record) {
+        CRC32 crc = checksums.get();
+        crc.reset();
+        crc.update(record.array(), TYPE, RECORD_BYTES - TYPE);
+        record.putInt(CRC, (int) crc.getValue());
+
+        lock.lock();
+        try {
+            if (position + RECORD_BYTES > SEGMENT_BYTES) {
+                retired.add(segment);
+                openSegment(segmentIndex + 1);
+            }
+            segment.position((int) position);
+            segment.put(record.array(), 0, RECORD_BYTES);
+            position += RECORD_BYTES;
+            dirty = true;
+        } catch (IOException e) {
+            // Sem segmento novo o diário deixa de crescer; o jogo continua, só sem proteção.
+            LOG.error("Falha ao abrir um segmento do diário; desligando o diário", e);
+            instance = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int currentSegment() {
+        lock.lock();
+        try {
+            return segmentIndex;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Só com o lock, ou antes de o diário ser publicado. */
+    private void openSegment(int index) throws IOException {
+        Path file = segmentPath(index);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // O ficheiro novo vem a zeros, e um registo a zeros não passa no CRC: é o fim dos dados.
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        }
+        segmentIndex = index;
+        position = 0;
+    }
+
+    // --- Commit em grupo ---
+
+    private void syncLoop() {
+        while (true) {
+            LockSupport.parkNanos(SYNC_MILLIS * 1_000_000L);
+            try {
+                sync();
+            } catch (RuntimeException e) {
+                LOG.warn("Falha ao forçar o diário para o disco: ", e.getMessage());
+            }
+        }
+    }
+
+    private void sync() {
+        List<MappedByteBuffer> full;
+        MappedByteBuffer current;
+        lock.lock();
+        try {
+            full = retired.isEmpty() ? null : new ArrayList<>(retired);
+            retired.clear();
+            current = dirty ? segment : null;
+            dirty = false;
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            for (MappedByteBuffer buffer : full) buffer.force();
+            deleteUnneededSegments();
+        }
+        if (current != null) current.force();
+    }
+
+    /** Apaga os segmentos que já não têm registos de nenhuma partida viva. */
+    private void deleteUnneededSegments() {
+        int keepFrom = currentSegment();
+        for (int first : firstSegment.values()) keepFrom = Math.min(keepFrom, first);
+        for (int index : segmentIndexes()) {
+            if (index >= keepFrom) break;
+            try {
+                Files.deleteIfExists(segmentPath(index));
+            } catch (IOException e) {
+                LOG.debug("Não foi possível apagar o segmento ", segmentPath(index), ": " + e.getMessage());
+            }
+        }
+    }
+
+    // --- Recuperação ---
+
+    private List<RecoveredGame> recover() throws IOException {
+        Map<Long, RecoveredGame> live = new LinkedHashMap<>();
+        Map<Long, byte[]> partialText = new ConcurrentHashMap<>();
+        long maxSession = 0;
+        int records = 0;
+        segmentIndex = 0;
+        byte[] record = new byte[RECORD_BYTES];
+        CRC32 crc = new CRC32();
+        for (int index : segmentIndexes()) {
+            segmentIndex = index;
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segmentPath(index)));
+            while (data.remaining() >= RECORD_BYTES) {
+                data.get(record);
+                crc.reset();
+                crc.update(record, TYPE, RECORD_BYTES - TYPE);
+                ByteBuffer view = ByteBuffer.wrap(record);
+                // Registo a zeros ou cortado a meio: acabaram os dados válidos deste segmento.
+                if (view.getInt(CRC) != (int) crc.getValue() || view.get(TYPE) == 0) break;
+                records++;
+
+                long session = view.getLong(SESSION);
+                maxSession = Math.max(maxSession, session);
+                String text = readText(view, session, partialText);
+                if (text == null) continue; // o texto continua no próximo registo desta partida
+
+                byte type = view.get(TYPE);
+                int seat = view.get(SEAT_OFFSET);
+                if (type == START) {
+                    Geometry geometry = Geometry.byId(text);
+                    if (geometry != null) live.put(session, new RecoveredGame(session, geometry, index));
+                    continue;
+                }
+                RecoveredGame game = live.get(session);
+                if (game == null) continue;
+                switch (type) {
+                    case SEAT:
+                        if (seat < game.names.length) game.names[seat] = text;
+                        break;
+                    case END:
+                        live.remove(session);
+                        break;
+                    default:
+                        game.events.add(new Event(type, seat, view.getInt(FROM), view.getInt(TO), view.getInt(HOPS),
+                                (view.get(FLAGS) & FLAG_PATH) != 0, text));
+                }
+            }
+        }
+        GameSession.reserveIds(maxSession);
+        for (RecoveredGame game : live.values()) firstSegment.put(game.id, game.firstSegment);
+        LOG.debug("Diário lido: ", records, " registos");
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * Junta o texto de um registo aos anteriores da mesma partida. Devolve o texto completo, ""
+     * para registos sem texto, ou null se ainda faltarem pedaços.
+     */
+    private static String readText(ByteBuffer view, long session, Map<Long, byte[]> partialText) {
+        int length = view.get(TEXT_LENGTH) & 0xFF;
+        byte[] previous = partialText.remove(session);
+        byte[] bytes = previous == null ? new byte[length] : Arrays.copyOf(previous, previous.length + length);
+        System.arraycopy(view.array(), TEXT, bytes, bytes.length - length, length);
+        if ((view.get(FLAGS) & FLAG_MORE) != 0) {
+            partialText.put(session, bytes);
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /** Índices dos segmentos existentes, por ordem. */
+    private int[] segmentIndexes() {
+        List<Integer> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    indexes.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // não é um segmento nosso
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Não foi possível listar o diário: ", e.getMessage());
+        }
+        int[] sorted = new int[indexes.size()];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = indexes.get(i);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
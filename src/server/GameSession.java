@@ -1,24 +1,71 @@
 package server;
 
+import engine.GameAnalysis;
+import engine.MoveLog;
 import game.Board;
+import game.Geometry;
+import shared.Log;
 import shared.Protocol;
-import java.awt.Point;
+import java.math.BigInteger;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class GameSession implements Runnable {
-    private final ClientHandler player1;
-    private final ClientHandler player2;
+/**
+ * Uma partida. Funciona como um ator: {@link #start()}, {@link #processMessage} e
+ * {@link #handleDisconnect} só colocam a mensagem na caixa de correio da sessão, e as
+ * mensagens são tratadas uma a uma, por ordem, no shard do {@link SessionScheduler} a que
+ * a sessão pertence. Todo o estado abaixo só é lido e escrito nessa thread, sem locks.
+ */
+public class GameSession {
+    private static final Log LOG = Log.get("session");
+    // Mensagens tratadas de seguida antes de o shard passar à sessão seguinte.
+    private static final int MAILBOX_BATCH = 64;
+    // Tempo para o jogador da vez jogar; se passar, perde a partida (0 = sem limite).
+    private static final long TURN_TIMEOUT_MILLIS = Long.getLong("halma.game.turnSeconds", 300) * 1000;
+    // Tempo que o lugar de um jogador que caiu fica guardado à espera de um RESUME; 0 = desiste logo, como antes.
+    private static final long RESUME_GRACE_MILLIS = Long.getLong("halma.game.resumeGraceSeconds", 60) * 1000;
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+    // Um espectador com mais do que isto por enviar deixa de receber eventos até recuperar (ver spectate).
+    private static final long SPECTATOR_MAX_BACKLOG = Long.getLong("halma.spectator.maxBacklogKb", 256) * 1024;
+    // Tempo máximo que um espectador pode ficar atrasado antes de ser desligado.
+    private static final long SPECTATOR_MAX_LAG_MILLIS = Long.getLong("halma.spectator.maxLagSeconds", 30) * 1000;
+    private static final AtomicLong nextId = new AtomicLong();
+    // Conversa: só as últimas mensagens ficam guardadas, cada uma com tamanho limitado, e cada
+    // jogador envia no máximo CHAT_RATE por segundo, com rajadas até CHAT_BURST (balde de fichas).
+    private static final int CHAT_HISTORY_SIZE = Integer.getInteger("halma.chat.historySize", 200);
+    private static final int CHAT_MAX_LENGTH = Integer.getInteger("halma.chat.maxLength", 300);
+    private static final double CHAT_RATE = Double.parseDouble(System.getProperty("halma.chat.ratePerSecond", "1"));
+    private static final double CHAT_BURST = Double.parseDouble(System.getProperty("halma.chat.burst", "5"));
+    static final String CHAT_THROTTLED = "Mensagens demais. Aguarde um pouco antes de escrever de novo.";
+
+    private final long id;
+    // Partidas só entre humanos vão para o diário (ver GameJournal); um bot não volta a ligar-se.
+    private final boolean journaled;
+    // players[i] é o jogador com id i + 1; a geometria define quantos são (2 ou 4).
+    private final ClientHandler[] players;
+    // Lugares de quem saiu de uma partida de quatro que continuou sem eles (ver removeSeat).
+    private final boolean[] eliminated;
+    private final List<Spectator> spectators = new ArrayList<>();
     private final Board board;
     private int currentPlayer;
 
-    private int player1MoveCount = 0;
-    private int player2MoveCount = 0;
-    private int player1InvalidAttempts = 0;
-    private int player2InvalidAttempts = 0;
-    private final List<String> chatHistory = new ArrayList<>();
+    private final int[] moveCounts;
+    private final int[] invalidAttempts;
+    private final ChatHistory chatHistory = new ChatHistory(CHAT_HISTORY_SIZE);
+    private final double[] chatTokens;
+    private final long[] chatRefilledAt;
     private String winnerInfo = "O jogo encerrou inesperadamente.";
     private boolean gameEnded = false;
 
@@ -26,38 +73,374 @@ public class GameSession implements Runnable {
     private int chainJumpRow;
     private int chainJumpCol;
 
-    private final String player1Name;
-    private final String player2Name;
+    private final String[] playerNames;
+
+    // Prazo do turno em curso; turnNumber distingue um prazo antigo que dispare já depois da jogada.
+    private TimerWheel.Timeout turnTimer;
+    private int turnNumber = 0;
+
+    // Por lugar: a ficha para o retomar e, enquanto o jogador está fora, o prazo para voltar.
+    private final String[] resumeTokens;
+    private final TimerWheel.Timeout[] graceTimers;
+
+    private final Executor shard = SessionScheduler.shared().nextShard();
+    private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    // Mensagens na caixa de correio; quem a faz passar de 0 para 1 agenda a sessão no shard.
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Runnable drainMailbox = this::drainMailbox;
+
+    // Quantas vezes cada posição (hash de Zobrist + jogador da vez) já apareceu, para detectar repetições.
+    private static final int REPETITION_WARNING = 3;
+    private final Map<Long, Integer> positionCounts = new HashMap<>();
+
+    // Buffers reutilizados para GET_VALID_MOVES e MOVE_PATH (só usados na thread do shard).
+    private final int[] moveBuffer = new int[Board.MAX_MOVES];
+    private final int[] pathBuffer;
+
+    // Turnos completos da partida, para a análise no fim. O turno em curso acumula-se aqui até terminar.
+    private final MoveLog moveLog = new MoveLog();
+    private int turnStartCell = -1;
+    private int turnEndCell;
+    private int turnHops;
+
+    // Pool partilhado e limitado para a análise pós-jogo; nunca corre na thread de uma sessão.
+    private static final ForkJoinPool ANALYSIS_POOL = new ForkJoinPool(Integer.getInteger("halma.analysis.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    // Partidas já arrancadas e ainda não terminadas, para o estado do servidor.
+    private static final AtomicInteger activeSessions = new AtomicInteger();
 
     public GameSession(ClientHandler player1, ClientHandler player2) {
-        this.player1 = player1;
-        this.player2 = player2;
-        this.board = new Board();
+        this(Geometry.CLASSIC, player1, player2);
+    }
+
+    public GameSession(Geometry geometry, ClientHandler... players) {
+        this(nextId.incrementAndGet(), geometry, players);
+    }
+
+    private GameSession(long id, Geometry geometry, ClientHandler... players) {
+        if (players.length != geometry.getPlayerCount()) {
+            throw new IllegalArgumentException("A geometria " + geometry.getId() + " exige " + geometry.getPlayerCount() + " jogadores.");
+        }
+        this.id = id;
+        this.players = players.clone();
+        this.board = new Board(geometry);
         this.currentPlayer = 1;
+        this.eliminated = new boolean[players.length];
+        this.moveCounts = new int[players.length];
+        this.invalidAttempts = new int[players.length];
+        this.chatTokens = new double[players.length];
+        Arrays.fill(chatTokens, CHAT_BURST);
+        this.chatRefilledAt = new long[players.length];
+        Arrays.fill(chatRefilledAt, System.nanoTime());
+        this.pathBuffer = new int[board.getCellCount()];
+        this.resumeTokens = new String[players.length];
+        this.graceTimers = new TimerWheel.Timeout[players.length];
 
-        this.player1Name = player1.getPlayerName();
-        this.player2Name = player2.getPlayerName();
+        this.playerNames = new String[players.length];
+        boolean humansOnly = true;
+        for (int i = 0; i < players.length; i++) {
+            playerNames[i] = players[i].getPlayerName();
+            players[i].setGameSession(this);
+            if (players[i] instanceof BotClientHandler) humansOnly = false;
+        }
+        this.journaled = humansOnly;
+    }
 
-        this.player1.setGameSession(this);
-        this.player2.setGameSession(this);
+    /** Arranca a partida: envia a cada jogador o seu id, o tabuleiro e os adversários. */
+    public void start() {
+        submit(this::begin);
     }
 
-    @Override
-    public void run() {
-        player1.sendMessage(Protocol.WELCOME + Protocol.SEPARATOR + "1");
-        player2.sendMessage(Protocol.WELCOME + Protocol.SEPARATOR + "2");
-        player1.sendMessage(Protocol.OPPONENT_FOUND + Protocol.SEPARATOR + player2Name);
-        player2.sendMessage(Protocol.OPPONENT_FOUND + Protocol.SEPARATOR + player1Name);
-        player1.sendMessage(Protocol.GAME_START);
-        player2.sendMessage(Protocol.GAME_START);
+    private void begin() {
+        activeSessions.incrementAndGet();
+        SessionRegistry.register(this);
+        LOG.info("Partida ", id, " começou: ", String.join(", ", playerNames));
+        if (journaled) GameJournal.started(id, board.getGeometry(), playerNames);
+        for (int i = 0; i < players.length; i++) {
+            players[i].sendMessage(Protocol.WELCOME + Protocol.SEPARATOR + (i + 1));
+            issueResumeToken(i);
+            players[i].sendMessage(Protocol.BOARD_SETUP + Protocol.SEPARATOR + board.getGeometry().getId());
+        }
+        for (int i = 0; i < players.length; i++) {
+            players[i].sendMessage(Protocol.OPPONENT_FOUND + Protocol.SEPARATOR + opponentsOf(i));
+        }
+        broadcast(Protocol.GAME_START);
         updateTurn();
+        recordPosition();
     }
-    
+
+    /** Os ids das partidas novas passam a começar depois de {@code maxId} (ids lidos do diário). */
+    static void reserveIds(long maxId) {
+        nextId.accumulateAndGet(maxId, Math::max);
+    }
+
+    /**
+     * Reconstrói uma partida que estava em curso quando o servidor caiu: repete os acontecimentos
+     * do diário no tabuleiro e guarda o lugar de cada jogador durante o prazo de retoma, à espera
+     * de que volte com a sua ficha (ver {@link #resume}). Quem não voltar perde por desistência.
+     */
+    static void restore(GameJournal.RecoveredGame game) {
+        if (RESUME_GRACE_MILLIS <= 0) {
+            LOG.warn("Partida ", game.id, " não recuperada: o prazo de retoma está desligado.");
+            GameJournal.ended(game.id, Metrics.OUTCOME_DISCONNECT);
+            return;
+        }
+        ClientHandler[] seats = new ClientHandler[game.names.length];
+        for (int i = 0; i < seats.length; i++) {
+            seats[i] = new AbsentPlayer(game.names[i] != null ? game.names[i] : "Jogador " + (i + 1));
+        }
+        GameJournal.adopt(game);
+        GameSession session = new GameSession(game.id, game.geometry, seats);
+        session.submit(() -> session.replay(game.events));
+    }
+
+    private void replay(List<GameJournal.Event> events) {
+        recordPosition();
+        for (GameJournal.Event event : events) {
+            switch (event.type) {
+                case GameJournal.MOVE:
+                    board.performMove(event.from, event.to);
+                    moveCounts[event.seat]++;
+                    recordSegment(event.from, event.to, event.hops);
+                    if (!event.path && event.hops > 0 && board.canJumpFrom(board.rowOf(event.to), board.colOf(event.to))) {
+                        isChainJumpActive = true;
+                        chainJumpRow = board.rowOf(event.to);
+                        chainJumpCol = board.colOf(event.to);
+                    } else {
+                        isChainJumpActive = false;
+                        replayTurnEnd();
+                    }
+                    break;
+                case GameJournal.CHAIN_END:
+                    isChainJumpActive = false;
+                    replayTurnEnd();
+                    break;
+                case GameJournal.CHAT:
+                    chatHistory.add(event.text);
+                    break;
+                case GameJournal.TOKEN:
+                    resumeTokens[event.seat] = event.text;
+                    break;
+                case GameJournal.LEFT:
+                    leaveSeat(event.seat);
+                    break;
+            }
+            if (gameEnded) {
+                // A queda foi entre o lance da vitória e o seu registo de fim: não há nada a retomar.
+                LOG.info("Partida ", id, " já estava ganha no diário; não será retomada.");
+                GameJournal.ended(id, Metrics.OUTCOME_VICTORY);
+                return;
+            }
+        }
+
+        activeSessions.incrementAndGet();
+        SessionRegistry.register(this);
+        for (String token : resumeTokens) {
+            if (token != null) SessionRegistry.registerToken(token, this);
+        }
+        LOG.info("Partida ", id, " recuperada do diário: ", String.join(", ", playerNames));
+        restartTurnTimer();
+        for (int i = 0; i < players.length; i++) {
+            if (!eliminated[i]) playerLeft(players[i]);
+        }
+    }
+
+    /** Como finishTurn, mas sem mensagens: fecha o turno repetido e passa a vez. */
+    private void replayTurnEnd() {
+        closeTurn();
+        if (board.checkForWinner(currentPlayer)) {
+            gameEnded = true;
+            return;
+        }
+        currentPlayer = nextActivePlayer(currentPlayer);
+        recordPosition();
+    }
+
+    /** Lugar de uma partida recuperada cujo jogador ainda não voltou; não tem ligação. */
+    private static final class AbsentPlayer extends ClientHandler {
+        AbsentPlayer(String name) {
+            setPlayerName(name);
+        }
+
+        @Override
+        boolean isConnected() {
+            return false;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            // ninguém a quem enviar
+        }
+    }
+
+    private String opponentsOf(int seat) {
+        StringJoiner opponents = new StringJoiner(", ");
+        for (int j = 0; j < players.length; j++) {
+            if (j != seat) opponents.add(playerNames[j]);
+        }
+        return opponents.toString();
+    }
+
+    /** Põe uma tarefa na caixa de correio; pode ser chamado de qualquer thread. */
+    private void submit(Runnable task) {
+        mailbox.add(task);
+        if (pending.getAndIncrement() == 0) shard.execute(drainMailbox);
+    }
+
+    /**
+     * Trata as mensagens pendentes, até MAILBOX_BATCH de cada vez para não atrasar as outras
+     * sessões do shard. As respostas de todas elas saem num só lote de saída por ligação.
+     */
+    private void drainMailbox() {
+        holdOutput();
+        try {
+            for (int handled = 0; handled < MAILBOX_BATCH; handled++) {
+                Runnable task = mailbox.poll();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Erro ao tratar mensagem da sessão", e);
+                }
+                if (pending.decrementAndGet() == 0) return;
+            }
+        } finally {
+            releaseOutput();
+        }
+        // Ainda há mensagens: volta ao fim da fila do shard.
+        shard.execute(drainMailbox);
+    }
+
+    static int activeSessions() {
+        return activeSessions.get();
+    }
+
+    /** Id (1..n) do jogador ligado a este handler, ou 0 se não pertencer à sessão. */
+    private int playerIdOf(ClientHandler handler) {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] == handler) return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Abre um lote de saída em todas as ligações: as mensagens geradas enquanto a caixa de correio
+     * é esvaziada são acumuladas e enviadas de uma vez no {@link #releaseOutput()}, em vez de uma escrita cada.
+     */
+    private void holdOutput() {
+        for (ClientHandler player : players) player.holdOutput();
+    }
+
+    private void releaseOutput() {
+        for (ClientHandler player : players) player.releaseOutput();
+    }
+
+    /** Para todos os jogadores ainda na partida; os espectadores também recebem. */
+    private void broadcast(String message) {
+        broadcastExcept(null, message);
+    }
+
+    /** Para todos menos {@code excluded} e quem já saiu da partida; os espectadores também recebem. */
+    private void broadcastExcept(ClientHandler excluded, String message) {
+        for (int i = 0; i < players.length; i++) {
+            if (!eliminated[i] && players[i] != excluded) players[i].sendMessage(message);
+        }
+        spectate(message);
+    }
+
+    long id() {
+        return id;
+    }
+
+    /** Um espectador e o seu estado de atraso; só usado na thread da sessão. */
+    private static final class Spectator {
+        final ClientHandler handler;
+        long laggingSince = -1; // -1 = em dia
+
+        Spectator(ClientHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Junta um espectador à partida: recebe o estado atual num SNAPSHOT e daí em diante os mesmos
+     * eventos que os jogadores veem do outro lado do tabuleiro. Pode ser chamado de qualquer thread.
+     */
+    void addSpectator(ClientHandler handler) {
+        submit(() -> {
+            if (gameEnded) {
+                handler.sendMessage(Protocol.INFO + Protocol.SEPARATOR + "Esta partida já terminou.");
+                return;
+            }
+            handler.startWatching(this);
+            spectators.add(new Spectator(handler));
+            LOG.debug("Espectador na partida " + id + ": ", handler.getPlayerName());
+            handler.sendMessage(Protocol.WELCOME + Protocol.SEPARATOR + 0);
+            handler.sendMessage(Protocol.BOARD_SETUP + Protocol.SEPARATOR + board.getGeometry().getId());
+            handler.sendMessage(Protocol.OPPONENT_FOUND + Protocol.SEPARATOR + String.join(", ", playerNames));
+            handler.sendMessage(snapshot());
+        });
+    }
+
+    void removeSpectator(ClientHandler handler) {
+        submit(() -> spectators.removeIf(spectator -> spectator.handler == handler));
+    }
+
+    /**
+     * Envia o evento a todos os espectadores, codificado uma só vez ({@link SharedFrame}). Um
+     * espectador cujo socket não acompanha acumula bytes por enviar; passado o limite deixa de
+     * receber eventos e, quando a fila esvaziar o suficiente, salta para o estado atual com um
+     * SNAPSHOT em vez de receber o que perdeu. Se ficar atrasado demasiado tempo, é desligado.
+     * Os jogadores nunca esperam por ele.
+     */
+    private void spectate(String message) {
+        spectate(message, false);
+    }
+
+    /** Com {@code always}, o evento segue mesmo para quem está atrasado (as mensagens de fim de jogo). */
+    private void spectate(String message, boolean always) {
+        if (spectators.isEmpty()) return;
+        SharedFrame frame = new SharedFrame(message);
+        SharedFrame snapshot = null;
+        long now = System.currentTimeMillis();
+        for (Iterator<Spectator> it = spectators.iterator(); it.hasNext(); ) {
+            Spectator spectator = it.next();
+            ClientHandler handler = spectator.handler;
+            if (!handler.isConnected()) {
+                it.remove();
+                continue;
+            }
+            if (always) {
+                handler.sendShared(frame);
+                continue;
+            }
+            long backlog = handler.pendingOutputBytes();
+            if (spectator.laggingSince < 0) {
+                if (backlog <= SPECTATOR_MAX_BACKLOG) {
+                    handler.sendShared(frame);
+                    continue;
+                }
+                spectator.laggingSince = now;
+                LOG.debug("Espectador atrasado na partida " + id + ": ", handler.getPlayerName());
+            }
+            if (backlog <= SPECTATOR_MAX_BACKLOG / 4) {
+                // Recuperou: o SNAPSHOT já inclui este evento, e repeti-lo a seguir é inofensivo.
+                if (snapshot == null) snapshot = new SharedFrame(snapshot());
+                handler.sendShared(snapshot);
+                handler.sendShared(frame);
+                spectator.laggingSince = -1;
+            } else if (now - spectator.laggingSince > SPECTATOR_MAX_LAG_MILLIS) {
+                LOG.info("Espectador desligado por não acompanhar a partida " + id + ": ", handler.getPlayerName());
+                it.remove();
+                handler.shutdown();
+            }
+        }
+    }
+
     // --- NOVO MÉTODO PARA ENVIAR ATUALIZAÇÕES DE PLACAR ---
     private void broadcastScoreUpdate() {
-        String message = Protocol.UPDATE_SCORE + Protocol.SEPARATOR + player1MoveCount + Protocol.SEPARATOR + player2MoveCount;
-        player1.sendMessage(message);
-        player2.sendMessage(message);
+        StringBuilder message = new StringBuilder(Protocol.UPDATE_SCORE);
+        for (int count : moveCounts) message.append(Protocol.SEPARATOR).append(count);
+        broadcast(message.toString());
     }
 
     private void handleMove(String moveData, ClientHandler sender) {
@@ -67,7 +450,7 @@ public class GameSession implements Runnable {
             int startCol = Integer.parseInt(coords[1]);
             int endRow = Integer.parseInt(coords[2]);
             int endCol = Integer.parseInt(coords[3]);
-            int senderId = (sender == player1) ? 1 : 2;
+            int senderId = playerIdOf(sender);
 
             if (isChainJumpActive && (startRow != chainJumpRow || startCol != chainJumpCol)) {
                 sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Você deve continuar pulando com a mesma peça.");
@@ -75,36 +458,32 @@ public class GameSession implements Runnable {
             }
 
             if (board.movePiece(startRow, startCol, endRow, endCol, currentPlayer, isChainJumpActive)) {
-                if (senderId == 1) player1MoveCount++; else player2MoveCount++;
+                moveCounts[senderId - 1]++;
                 
-                // Envia a atualização do placar para ambos os jogadores
+                // Envia a atualização do placar para todos os jogadores
                 broadcastScoreUpdate();
 
                 boolean wasJump = Math.abs(startRow - endRow) > 1 || Math.abs(startCol - endCol) > 1;
-                ClientHandler opponent = (sender == player1) ? player2 : player1;
+                recordSegment(board.index(startRow, startCol), board.index(endRow, endCol), wasJump ? 1 : 0);
+                if (journaled) {
+                    GameJournal.move(id, senderId - 1, board.index(startRow, startCol), board.index(endRow, endCol), wasJump ? 1 : 0, false);
+                }
 
                 if (wasJump && board.canJumpFrom(endRow, endCol)) {
                     isChainJumpActive = true;
                     chainJumpRow = endRow;
                     chainJumpCol = endCol;
                     sender.sendMessage(Protocol.JUMP_MOVE + Protocol.SEPARATOR + moveData);
-                    opponent.sendMessage(Protocol.OPPONENT_MOVED + Protocol.SEPARATOR + moveData);
+                    broadcastExcept(sender, Protocol.OPPONENT_MOVED + Protocol.SEPARATOR + moveData);
                     sender.sendMessage(Protocol.CHAIN_JUMP_OFFER + Protocol.SEPARATOR + endRow + Protocol.SEPARATOR + endCol);
                 } else {
                     isChainJumpActive = false;
                     sender.sendMessage(Protocol.VALID_MOVE + Protocol.SEPARATOR + moveData);
-                    opponent.sendMessage(Protocol.OPPONENT_MOVED + Protocol.SEPARATOR + moveData);
-
-                    if (board.checkForWinner(currentPlayer)) {
-                        String winnerName = (currentPlayer == 1) ? player1Name : player2Name;
-                        winnerInfo = winnerName + " ganhou por chegar no destino!";
-                        endGame(sender, opponent, Protocol.VICTORY, Protocol.DEFEAT);
-                    } else {
-                        switchTurn();
-                    }
+                    broadcastExcept(sender, Protocol.OPPONENT_MOVED + Protocol.SEPARATOR + moveData);
+                    finishTurn(sender);
                 }
             } else {
-                if (senderId == 1) player1InvalidAttempts++; else player2InvalidAttempts++;
+                invalidAttempts[senderId - 1]++;
                 sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Movimento inválido.");
             }
         } catch (Exception e) {
@@ -112,61 +491,413 @@ public class GameSession implements Runnable {
         }
     }
     
+    /**
+     * Aplica de uma vez uma sequência completa de saltos enviada numa única mensagem.
+     * O caminho é validado contra o tabuleiro e aplicado atomicamente; a jogada termina o turno.
+     */
+    private void handleMovePath(String pathData, ClientHandler sender) {
+        try {
+            String[] coords = pathData.split(Protocol.SEPARATOR);
+            int length = coords.length / 2;
+            if (coords.length % 2 != 0 || length < 2 || length > pathBuffer.length) {
+                throw new IllegalArgumentException("Caminho com tamanho inválido");
+            }
+            for (int i = 0; i < length; i++) {
+                int row = Integer.parseInt(coords[2 * i]);
+                int col = Integer.parseInt(coords[2 * i + 1]);
+                if (!board.isValidCoordinate(row, col)) throw new IllegalArgumentException("Casa fora do tabuleiro");
+                pathBuffer[i] = board.index(row, col);
+            }
+            int senderId = playerIdOf(sender);
+            int start = pathBuffer[0];
+            int end = pathBuffer[length - 1];
+
+            if (isChainJumpActive && start != board.index(chainJumpRow, chainJumpCol)) {
+                sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Você deve continuar pulando com a mesma peça.");
+                return;
+            }
+
+            if (board.applyJumpPath(pathBuffer, length, currentPlayer)) {
+                moveCounts[senderId - 1]++;
+                broadcastScoreUpdate();
+                recordSegment(start, end, length - 1);
+                if (journaled) GameJournal.move(id, senderId - 1, start, end, length - 1, true);
+
+                isChainJumpActive = false;
+                String moveData = board.rowOf(start) + Protocol.SEPARATOR + board.colOf(start) + Protocol.SEPARATOR
+                        + board.rowOf(end) + Protocol.SEPARATOR + board.colOf(end);
+                sender.sendMessage(Protocol.VALID_MOVE + Protocol.SEPARATOR + moveData);
+                broadcastExcept(sender, Protocol.OPPONENT_MOVED + Protocol.SEPARATOR + moveData);
+                finishTurn(sender);
+            } else {
+                invalidAttempts[senderId - 1]++;
+                sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Sequência de saltos inválida.");
+            }
+        } catch (Exception e) {
+            sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Comando de caminho malformado.");
+        }
+    }
+
     // --- O RESTANTE DA CLASSE (run, processMessage, etc.) PERMANECE IGUAL ---
     // ...
     // (Cole o restante do código de GameSession.java aqui)
     // ...
     private void handleForfeit(ClientHandler forfeiter) {
         if (gameEnded) return;
-        System.out.println("SERVER: Recebido pedido de desistência do " + forfeiter.getPlayerName());
-        
-        ClientHandler winner = (forfeiter == player1) ? player2 : player1;
-        String winnerName = winner.getPlayerName();
-        winnerInfo = winnerName + " ganhou pela desistência do oponente.";
-        
+        LOG.info("Recebido pedido de desistência do ", forfeiter.getPlayerName());
+
+        String result = namesExcept(forfeiter) + " ganhou pela desistência do oponente.";
         String loseMessage = Protocol.DEFEAT + Protocol.SEPARATOR + "Você desistiu da partida.";
-        String winMessage = Protocol.OPPONENT_FORFEIT;
-        
-        endGame(winner, forfeiter, winMessage, loseMessage);
+        endGameByForfeit(forfeiter, result, loseMessage, Metrics.OUTCOME_FORFEIT);
     }
 
-    public synchronized void handleDisconnect(ClientHandler disconnectedPlayer) {
-        if (gameEnded) return;
-        System.out.println("SERVER: Jogador desconectado a meio do jogo.");
-        
-        ClientHandler winner = (disconnectedPlayer == player1) ? player2 : player1;
-        endGame(winner, disconnectedPlayer, Protocol.OPPONENT_FORFEIT, "");
+    /**
+     * Chamado periodicamente pelo {@link SessionRegistry}: termina por desistência uma partida em
+     * que algum jogador já não está ligado (por exemplo, desligado por inatividade sem que a
+     * desconexão chegasse à sessão).
+     */
+    void reapIfAbandoned() {
+        submit(() -> {
+            if (gameEnded) return;
+            for (int i = 0; i < players.length; i++) {
+                if (eliminated[i] || players[i].isConnected() || graceTimers[i] != null) continue;
+                LOG.info("A recolher a sessão abandonada por ", players[i].getPlayerName());
+                playerLeft(players[i]);
+                if (gameEnded) return;
+            }
+        });
+    }
+
+    /** O prazo do turno {@code turn} acabou: o jogador da vez perde, se ainda for o mesmo turno. */
+    private void expireTurn(int turn) {
+        if (gameEnded || turn != turnNumber) return;
+        ClientHandler late = players[currentPlayer - 1];
+        LOG.info("Tempo de jogada esgotado para ", late.getPlayerName());
+        String result = namesExcept(late) + " ganhou porque o tempo de jogada de " + late.getPlayerName() + " esgotou.";
+        endGameByForfeit(late, result, Protocol.DEFEAT + Protocol.SEPARATOR + "O seu tempo para jogar esgotou.", Metrics.OUTCOME_TIMEOUT);
+    }
+
+    /**
+     * Depois dos resultados enviados: sai do registo e solta os jogadores, para a sessão (com o
+     * tabuleiro e o histórico do chat) poder ser recolhida mesmo que as ligações continuem abertas.
+     */
+    private void release() {
+        SessionRegistry.unregister(this);
+        for (int i = 0; i < players.length; i++) {
+            if (resumeTokens[i] != null) SessionRegistry.unregisterToken(resumeTokens[i]);
+            if (graceTimers[i] != null) graceTimers[i].cancel();
+            if (players[i].getGameSession() == this) players[i].setGameSession(null);
+        }
+        for (Spectator spectator : spectators) spectator.handler.stopWatching();
+        spectators.clear();
+    }
+
+    public void handleDisconnect(ClientHandler disconnectedPlayer) {
+        submit(() -> {
+            // Uma ligação antiga de um lugar que já foi retomado já não pertence à sessão.
+            if (gameEnded || playerIdOf(disconnectedPlayer) == 0) return;
+            playerLeft(disconnectedPlayer);
+        });
+    }
+
+    /** A ligação do jogador caiu: guarda-lhe o lugar durante o prazo de retoma, ou termina por desistência. */
+    private void playerLeft(ClientHandler player) {
+        int seat = playerIdOf(player) - 1;
+        if (eliminated[seat]) return;
+        if (RESUME_GRACE_MILLIS <= 0) {
+            LOG.info("Jogador desconectado a meio do jogo: ", player.getPlayerName());
+            endGameByForfeit(player, null, "", Metrics.OUTCOME_DISCONNECT);
+            return;
+        }
+        if (graceTimers[seat] != null) return;
+        LOG.info("Jogador desconectado a meio do jogo: ", player.getPlayerName(), "; lugar guardado para retomar.");
+        broadcastExcept(player, Protocol.INFO + Protocol.SEPARATOR + playerNames[seat]
+                + " perdeu a ligação. Aguardando a reconexão por até " + RESUME_GRACE_MILLIS / 1000 + "s...");
+        graceTimers[seat] = TimerWheel.shared().schedule(() -> submit(() -> expireGrace(seat, player)), RESUME_GRACE_MILLIS);
+    }
+
+    /** O prazo para retomar o lugar acabou sem o jogador voltar: perde por desistência. */
+    private void expireGrace(int seat, ClientHandler player) {
+        if (gameEnded || players[seat] != player) return;
+        graceTimers[seat] = null;
+        LOG.info("Prazo para retomar a partida esgotado: ", player.getPlayerName());
+        endGameByForfeit(player, null, "", Metrics.OUTCOME_DISCONNECT);
+    }
+
+    /** Gera uma ficha nova para o lugar (a anterior deixa de valer) e envia-a ao jogador. */
+    private void issueResumeToken(int seat) {
+        if (resumeTokens[seat] != null) SessionRegistry.unregisterToken(resumeTokens[seat]);
+        String token = new BigInteger(128, TOKEN_RANDOM).toString(36);
+        resumeTokens[seat] = token;
+        SessionRegistry.registerToken(token, this);
+        if (journaled) GameJournal.token(id, seat, token);
+        players[seat].sendMessage(Protocol.RESUME_TOKEN + Protocol.SEPARATOR + token);
+    }
+
+    /**
+     * Um cliente voltou com a ficha {@code token} (SET_NAME com RESUME). Pode ser chamado de
+     * qualquer thread; se a partida já tiver acabado, o cliente vai para a fila como um novo jogador.
+     */
+    void resume(ClientHandler handler, String token) {
+        submit(() -> takeSeat(handler, token));
+    }
+
+    private void takeSeat(ClientHandler handler, String token) {
+        int seat = -1;
+        for (int i = 0; i < resumeTokens.length; i++) {
+            if (token.equals(resumeTokens[i])) seat = i;
+        }
+        if (gameEnded || seat < 0) {
+            handler.sendMessage(Protocol.INFO + Protocol.SEPARATOR + "A partida já não está disponível. Aguardando oponente...");
+            HalmaServer.enqueue(handler, board.getGeometry());
+            return;
+        }
+
+        ClientHandler previous = players[seat];
+        if (graceTimers[seat] != null) {
+            graceTimers[seat].cancel();
+            graceTimers[seat] = null;
+        }
+        players[seat] = handler;
+        handler.setGameSession(this);
+        // O lote de saída aberto por drainMailbox passa da ligação antiga para a nova.
+        handler.holdOutput();
+        previous.releaseOutput();
+        if (previous != handler) {
+            // Pode ainda parecer ligada se a queda não foi detetada deste lado.
+            previous.setGameSession(null);
+            previous.shutdown();
+        }
+        LOG.info("Jogador retomou a partida: ", playerNames[seat]);
+
+        handler.sendMessage(Protocol.WELCOME + Protocol.SEPARATOR + (seat + 1));
+        issueResumeToken(seat);
+        handler.sendMessage(Protocol.BOARD_SETUP + Protocol.SEPARATOR + board.getGeometry().getId());
+        handler.sendMessage(Protocol.OPPONENT_FOUND + Protocol.SEPARATOR + opponentsOf(seat));
+        handler.sendMessage(snapshot());
+        broadcastExcept(handler, Protocol.INFO + Protocol.SEPARATOR + playerNames[seat] + " voltou à partida.");
+    }
+
+    /**
+     * Estado completo da partida numa só mensagem (ver {@link Protocol#SNAPSHOT}), em vez de
+     * repetir o histórico: jogador da vez, cadeia de saltos em curso, dono de cada casa e placar.
+     */
+    private String snapshot() {
+        int cellCount = board.getCellCount();
+        StringBuilder message = new StringBuilder(Protocol.SNAPSHOT.length() + cellCount + 32)
+                .append(Protocol.SNAPSHOT).append(Protocol.SEPARATOR).append(currentPlayer)
+                .append(Protocol.SEPARATOR).append(isChainJumpActive ? board.index(chainJumpRow, chainJumpCol) + 1 : 0)
+                .append(Protocol.SEPARATOR);
+        for (int cell = 0; cell < cellCount; cell++) message.append((char) ('0' + board.ownerOf(cell)));
+        for (int count : moveCounts) message.append(Protocol.SEPARATOR).append(count);
+        return message.toString();
+    }
+
+    /**
+     * Termina o turno do jogador atual: verifica a vitória e, se não houver, passa a vez.
+     */
+    private void finishTurn(ClientHandler sender) {
+        closeTurn();
+        if (board.checkForWinner(currentPlayer)) {
+            winnerInfo = playerNames[currentPlayer - 1] + " ganhou por chegar no destino!";
+            endGame(sender, Protocol.VICTORY, Protocol.DEFEAT);
+        } else {
+            switchTurn();
+        }
     }
 
-    private void endGame(ClientHandler winner, ClientHandler loser, String winMessage, String loseMessage) {
+    /**
+     * Um jogador saiu (desistiu, esgotou o tempo ou não voltou a tempo). Se ainda ficarem pelo
+     * menos dois, a partida continua sem ele (ver {@link #removeSeat}); senão acaba, com
+     * {@code result} como resultado (null mantém o atual), e quem resta recebe a vitória por desistência.
+     */
+    private void endGameByForfeit(ClientHandler leaver, String result, String leaverMessage, String outcome) {
         if (gameEnded) return;
+        if (activePlayers() > 2) {
+            removeSeat(playerIdOf(leaver) - 1, leaverMessage);
+            return;
+        }
+        if (result != null) winnerInfo = result;
         gameEnded = true;
+        activeSessions.decrementAndGet();
+        Metrics.gameFinished(outcome);
+        if (journaled) GameJournal.ended(id, outcome);
+        cancelTurnTimer();
+        closeTurn();
+
+        LOG.info("A finalizar o jogo. Vencedor: ", namesExcept(leaver));
+
+        analyzeThen(() -> {
+            // Só para os jogadores: um espectador não ganhou nada.
+            for (int i = 0; i < players.length; i++) {
+                if (!eliminated[i] && players[i] != leaver) players[i].sendMessage(Protocol.OPPONENT_FORFEIT);
+            }
+            if (leaverMessage != null && !leaverMessage.isEmpty()) {
+                leaver.sendMessage(leaverMessage);
+            }
+        });
+    }
 
-        System.out.println("SERVER: A finalizar o jogo. Vencedor: " + winner.getPlayerName());
+    /**
+     * Tira da partida o lugar {@code seat}, que saiu, quando ainda ficam pelo menos dois jogadores
+     * (só nas geometrias de quatro). Quem saiu recebe {@code leaverMessage}, se houver, e deixa de
+     * receber os eventos da partida; os restantes são avisados e recebem o novo estado num SNAPSHOT.
+     */
+    private void removeSeat(int seat, String leaverMessage) {
+        ClientHandler leaver = players[seat];
+        boolean wasCurrent = seat == currentPlayer - 1;
+        LOG.info("Partida " + id + ": ", playerNames[seat], " saiu; a partida continua com os restantes.");
+        if (journaled) GameJournal.left(id, seat);
+        if (graceTimers[seat] != null) {
+            graceTimers[seat].cancel();
+            graceTimers[seat] = null;
+        }
+        if (resumeTokens[seat] != null) SessionRegistry.unregisterToken(resumeTokens[seat]);
+        if (leaverMessage != null && !leaverMessage.isEmpty()) leaver.sendMessage(leaverMessage);
+        if (leaver.getGameSession() == this) leaver.setGameSession(null);
+
+        leaveSeat(seat);
+        broadcast(Protocol.INFO + Protocol.SEPARATOR + playerNames[seat] + " saiu da partida. O jogo continua entre "
+                + namesExcept(null) + ".");
+        broadcast(snapshot());
+        if (wasCurrent) updateTurn();
+    }
 
-        sendGameOverStats();
+    /**
+     * A parte de {@link #removeSeat} que também se repete a partir do diário: as peças de quem saiu
+     * deixam o tabuleiro, para não taparem o acampamento de destino de ninguém, e a vez passa a
+     * saltar esse lugar. Se era a vez dele, o turno fecha e passa ao seguinte.
+     */
+    private void leaveSeat(int seat) {
+        eliminated[seat] = true;
+        resumeTokens[seat] = null;
+        board.removePieces(seat + 1);
+        if (seat == currentPlayer - 1) {
+            isChainJumpActive = false;
+            closeTurn();
+            currentPlayer = nextActivePlayer(currentPlayer);
+        }
+        recordPosition();
+    }
+
+    private int activePlayers() {
+        int count = 0;
+        for (boolean out : eliminated) {
+            if (!out) count++;
+        }
+        return count;
+    }
 
-        System.out.println("SERVER: Enviando mensagem de vitória para " + winner.getPlayerName() + ": " + winMessage);
-        winner.sendMessage(winMessage);
+    /** Quem joga depois de {@code player}, saltando os lugares de quem já saiu. */
+    private int nextActivePlayer(int player) {
+        Geometry geometry = board.getGeometry();
+        int next = geometry.nextPlayer(player);
+        while (eliminated[next - 1]) next = geometry.nextPlayer(next);
+        return next;
+    }
 
-        if (loseMessage != null && !loseMessage.isEmpty()) {
-            System.out.println("SERVER: Enviando mensagem de derrota para " + loser.getPlayerName() + ": " + loseMessage);
-            loser.sendMessage(loseMessage);
+    /** Nomes de quem ainda está na partida, menos {@code excluded}. */
+    private String namesExcept(ClientHandler excluded) {
+        StringJoiner names = new StringJoiner(", ");
+        for (int i = 0; i < players.length; i++) {
+            if (!eliminated[i] && players[i] != excluded) names.add(players[i].getPlayerName());
         }
+        return names.toString();
     }
 
-    public synchronized void processMessage(String message, ClientHandler sender) {
+    private void endGame(ClientHandler winner, String winMessage, String loseMessage) {
+        if (gameEnded) return;
+        gameEnded = true;
+        activeSessions.decrementAndGet();
+        Metrics.gameFinished(Metrics.OUTCOME_VICTORY);
+        if (journaled) GameJournal.ended(id, Metrics.OUTCOME_VICTORY);
+        cancelTurnTimer();
+
+        LOG.info("A finalizar o jogo. Vencedor: ", winner.getPlayerName());
+
+        analyzeThen(() -> {
+            LOG.debug("Enviando mensagem de vitória para ", winner.getPlayerName());
+            winner.sendMessage(winMessage);
+
+            if (loseMessage != null && !loseMessage.isEmpty()) {
+                for (int i = 0; i < players.length; i++) {
+                    ClientHandler loser = players[i];
+                    if (loser == winner || eliminated[i]) continue;
+                    LOG.debug("Enviando mensagem de derrota para ", loser.getPlayerName());
+                    loser.sendMessage(loseMessage);
+                }
+            }
+        });
+    }
+
+    /**
+     * Analisa a partida no pool de análise e, quando terminar, envia as estatísticas e depois
+     * as mensagens de fim de jogo (o cliente precisa das estatísticas antes de abrir os resultados).
+     * Se a análise falhar, as estatísticas seguem sem ela.
+     */
+    private void analyzeThen(Runnable sendResults) {
+        Geometry geometry = board.getGeometry();
+        MoveLog log = moveLog.copy();
+        CompletableFuture.supplyAsync(() -> GameAnalysis.analyze(geometry, log, ANALYSIS_POOL), ANALYSIS_POOL)
+                .handle((summaries, error) -> {
+                    if (error != null) {
+                        LOG.warn("Falha na análise pós-jogo", error);
+                    }
+                    // De volta à sessão: o envio mexe no estado da partida.
+                    submit(() -> {
+                        sendGameOverStats(summaries);
+                        sendResults.run();
+                        spectate(Protocol.GAME_ENDED + Protocol.SEPARATOR + winnerInfo, true);
+                        release();
+                    });
+                    return null;
+                });
+    }
+
+    /** Regista um movimento aplicado no turno em curso (um passo, um salto ou uma cadeia inteira). */
+    private void recordSegment(int from, int to, int hops) {
+        if (turnStartCell < 0) turnStartCell = from;
+        turnEndCell = to;
+        turnHops += hops;
+    }
+
+    /** Fecha o turno em curso no registo da partida, se alguma peça tiver sido movida. */
+    private void closeTurn() {
+        if (turnStartCell < 0) return;
+        moveLog.append(currentPlayer, turnStartCell, turnEndCell, turnHops);
+        turnStartCell = -1;
+        turnHops = 0;
+    }
+
+    public void processMessage(String message, ClientHandler sender) {
+        long received = System.nanoTime();
+        submit(() -> {
+            handleMessage(message, sender);
+            Metrics.commandHandled(message, received);
+        });
+    }
+
+    private void handleMessage(String message, ClientHandler sender) {
         if (gameEnded) return;
 
         String[] parts = message.split(Protocol.SEPARATOR, 2);
         String command = parts[0];
-        int senderId = (sender == player1) ? 1 : 2;
+        int senderId = playerIdOf(sender);
+        if (senderId == 0 || eliminated[senderId - 1]) return;
+        if (parts.length < 2 && carriesData(command)) {
+            sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Comando malformado.");
+            return;
+        }
 
         switch (command) {
             case Protocol.MOVE:
                 if (senderId == currentPlayer) handleMove(parts[1], sender);
                 else sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Não é o seu turno.");
                 break;
+            case Protocol.MOVE_PATH:
+                if (senderId == currentPlayer) handleMovePath(parts[1], sender);
+                else sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Não é o seu turno.");
+                break;
             case Protocol.CHAT:
                 broadcastChat(parts[1], senderId);
                 break;
@@ -176,63 +907,163 @@ public class GameSession implements Runnable {
             case Protocol.END_CHAIN_JUMP:
                 if (isChainJumpActive && senderId == currentPlayer) {
                     isChainJumpActive = false;
-                    if (board.checkForWinner(currentPlayer)) {
-                        String winnerName = (currentPlayer == 1) ? player1Name : player2Name;
-                        winnerInfo = winnerName + " ganhou por chegar no destino!";
-                        endGame(sender, (sender == player1) ? player2 : player1, Protocol.VICTORY, Protocol.DEFEAT);
-                    } else {
-                        switchTurn();
-                    }
+                    if (journaled) GameJournal.chainEnded(id, senderId - 1);
+                    finishTurn(sender);
                 }
                 break;
             case Protocol.GET_VALID_MOVES:
-                if (senderId == currentPlayer) {
-                    String[] coords = parts[1].split(Protocol.SEPARATOR);
-                    int row = Integer.parseInt(coords[0]);
-                    int col = Integer.parseInt(coords[1]);
-                    List<Point> moves = board.getValidMoves(row, col, isChainJumpActive);
-                    String movesStr = moves.stream().map(p -> p.x + "," + p.y).collect(Collectors.joining(";"));
-                    sender.sendMessage(Protocol.VALID_MOVES_LIST + Protocol.SEPARATOR + movesStr);
-                }
+                if (senderId == currentPlayer) handleGetValidMoves(parts[1], sender);
                 break;
         }
     }
+
+    /** Comandos que só fazem sentido com dados depois do separador. */
+    private static boolean carriesData(String command) {
+        switch (command) {
+            case Protocol.MOVE:
+            case Protocol.MOVE_PATH:
+            case Protocol.CHAT:
+            case Protocol.GET_VALID_MOVES:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void handleGetValidMoves(String cellData, ClientHandler sender) {
+        int row;
+        int col;
+        try {
+            String[] coords = cellData.split(Protocol.SEPARATOR);
+            row = Integer.parseInt(coords[0]);
+            col = Integer.parseInt(coords[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            sender.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Comando de consulta malformado.");
+            return;
+        }
+        int count = board.isValidCoordinate(row, col)
+                ? board.generateMoves(board.index(row, col), isChainJumpActive, moveBuffer) : 0;
+        StringBuilder movesStr = new StringBuilder(Protocol.VALID_MOVES_LIST).append(Protocol.SEPARATOR);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) movesStr.append(';');
+            movesStr.append(board.rowOf(moveBuffer[i])).append(',').append(board.colOf(moveBuffer[i]));
+        }
+        sender.sendMessage(movesStr.toString());
+    }
     
     private void updateTurn() {
-        if (currentPlayer == 1) {
-            player1.sendMessage(Protocol.SET_TURN + Protocol.SEPARATOR + "YOUR_TURN");
-            player2.sendMessage(Protocol.SET_TURN + Protocol.SEPARATOR + "OPPONENT_TURN");
-        } else {
-            player2.sendMessage(Protocol.SET_TURN + Protocol.SEPARATOR + "YOUR_TURN");
-            player1.sendMessage(Protocol.SET_TURN + Protocol.SEPARATOR + "OPPONENT_TURN");
+        ClientHandler current = players[currentPlayer - 1];
+        current.sendMessage(Protocol.SET_TURN + Protocol.SEPARATOR + "YOUR_TURN");
+        broadcastExcept(current, Protocol.SET_TURN + Protocol.SEPARATOR + "OPPONENT_TURN");
+        restartTurnTimer();
+    }
+
+    private void restartTurnTimer() {
+        cancelTurnTimer();
+        int turn = ++turnNumber;
+        if (TURN_TIMEOUT_MILLIS > 0) {
+            // A roda só entrega o prazo à caixa de correio; a decisão é tomada na thread da sessão.
+            turnTimer = TimerWheel.shared().schedule(() -> submit(() -> expireTurn(turn)), TURN_TIMEOUT_MILLIS);
         }
     }
 
+    private void cancelTurnTimer() {
+        if (turnTimer != null) turnTimer.cancel();
+        turnTimer = null;
+    }
+
     private void switchTurn() {
-        currentPlayer = (currentPlayer == 1) ? 2 : 1;
+        currentPlayer = nextActivePlayer(currentPlayer);
         updateTurn();
+        recordPosition();
+    }
+
+    private void recordPosition() {
+        int seen = positionCounts.merge(board.hash() ^ board.turnKey(currentPlayer), 1, Integer::sum);
+        if (seen == REPETITION_WARNING) {
+            broadcast(Protocol.INFO + Protocol.SEPARATOR + "A mesma posição se repetiu " + seen + " vezes. Tentem avançar as peças.");
+        }
     }
     
     private void broadcastChat(String chatMessage, int senderId) {
-        String senderName = (senderId == 1) ? player1Name : player2Name;
-        String formattedMessage = Protocol.CHAT_MESSAGE + Protocol.SEPARATOR + senderName + ": " + chatMessage;
-        player1.sendMessage(formattedMessage);
-        player2.sendMessage(formattedMessage);
-        chatHistory.add(senderName + ": " + chatMessage);
+        if (!takeChatToken(senderId - 1)) {
+            players[senderId - 1].sendMessage(Protocol.INFO + Protocol.SEPARATOR + CHAT_THROTTLED);
+            return;
+        }
+        if (chatMessage.length() > CHAT_MAX_LENGTH) {
+            // Sem partir um par substituto (ex.: um emoji): a metade solta sairia como '?'.
+            int end = CHAT_MAX_LENGTH;
+            if (end > 0 && Character.isHighSurrogate(chatMessage.charAt(end - 1))) end--;
+            chatMessage = chatMessage.substring(0, end);
+        }
+        String line = playerNames[senderId - 1] + ": " + chatMessage;
+        broadcast(Protocol.CHAT_MESSAGE + Protocol.SEPARATOR + line);
+        chatHistory.add(line);
+        if (journaled) GameJournal.chat(id, senderId - 1, line);
+    }
+
+    /** Balde de fichas do lugar {@code seat}: repõe as fichas pelo tempo passado e gasta uma, se houver. */
+    private boolean takeChatToken(int seat) {
+        long now = System.nanoTime();
+        double refill = (now - chatRefilledAt[seat]) / 1e9 * CHAT_RATE;
+        chatTokens[seat] = Math.min(CHAT_BURST, chatTokens[seat] + refill);
+        chatRefilledAt[seat] = now;
+        if (chatTokens[seat] < 1) return false;
+        chatTokens[seat] -= 1;
+        return true;
     }
     
-    private void sendGameOverStats() {
-        String chatLog = String.join("|", chatHistory);
+    /**
+     * Formato: vencedor:mov1:inv1:...:movN:invN:chat:análise. A análise vem no fim para os clientes
+     * antigos continuarem a ler os campos anteriores nas mesmas posições; tem um bloco por jogador
+     * separado por ';', com turnos,ganhoMédio(décimos),maiorCadeia,%guloso,distânciaPerdida,distânciaFinal,
+     * e fica vazia se não estiver disponível.
+     */
+    private void sendGameOverStats(GameAnalysis.PlayerSummary[] summaries) {
         StringJoiner stats = new StringJoiner(Protocol.SEPARATOR);
-        stats.add(winnerInfo)
-             .add(String.valueOf(player1MoveCount))
-             .add(String.valueOf(player1InvalidAttempts))
-             .add(String.valueOf(player2MoveCount))
-             .add(String.valueOf(player2InvalidAttempts))
-             .add(chatLog);
-        
+        stats.add(winnerInfo);
+        for (int i = 0; i < players.length; i++) {
+            stats.add(String.valueOf(moveCounts[i]))
+                 .add(String.valueOf(invalidAttempts[i]));
+        }
+        StringJoiner analysis = new StringJoiner(";");
+        if (summaries != null) {
+            for (GameAnalysis.PlayerSummary summary : summaries) {
+                analysis.add(summary.turns + "," + summary.averageGainTenths() + "," + summary.longestChain + ","
+                        + summary.greedyPercent() + "," + summary.lostDistance + "," + summary.finalDistance);
+            }
+        }
+        // O campo da conversa fica vazio: o histórico segue a seguir, uma mensagem CHAT_LOG por linha.
+        stats.add("");
+        stats.add(analysis.toString());
+
         String message = Protocol.GAME_OVER_STATS + Protocol.SEPARATOR + stats.toString();
-        player1.sendMessage(message);
-        player2.sendMessage(message);
+        sendToPlayers(message);
+        spectate(message, true);
+        sendChatLog();
+    }
+
+    /**
+     * Envia o histórico da conversa em mensagens CHAT_LOG pequenas, da mais antiga para a mais
+     * recente, em vez de uma só linha com tudo. Se o anel descartou mensagens, a primeira diz quantas.
+     */
+    private void sendChatLog() {
+        if (chatHistory.dropped() > 0) {
+            sendChatLogLine("(" + chatHistory.dropped() + " mensagens anteriores não foram guardadas)");
+        }
+        chatHistory.forEach(this::sendChatLogLine);
+    }
+
+    private void sendChatLogLine(String line) {
+        String message = Protocol.CHAT_LOG + Protocol.SEPARATOR + line;
+        sendToPlayers(message);
+        spectate(message, true);
+    }
+
+    /** Só para os jogadores ainda na partida; as mensagens de fim de jogo seguem à parte para os espectadores. */
+    private void sendToPlayers(String message) {
+        for (int i = 0; i < players.length; i++) {
+            if (!eliminated[i]) players[i].sendMessage(message);
+        }
     }
 }
\ No newline at end of file
@@ -1,99 +1,271 @@
 package server;
 
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-import javax.swing.JOptionPane;
-import javax.swing.SwingConstants;
-import javax.swing.SwingUtilities;
-import java.awt.Font;
+import game.Geometry;
+import shared.BinaryCodec;
+import shared.Log;
 import shared.Protocol;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HalmaServer {
-    private static final List<ClientHandler> waitingClients = new ArrayList<>();
+    private static final Log LOG = Log.get("server");
 
-    public static void main(String[] args) {
-        // --- ALTERAÇÃO APLICADA AQUI ---
-        // Adicionamos "12345" como o valor inicial da caixa de diálogo.
-        Object portStr = JOptionPane.showInputDialog(null, "Digite a porta para iniciar o servidor:", "Configuração do Servidor", JOptionPane.QUESTION_MESSAGE, null, null, "12345");
+    // Fila de espera e pareamento; a regra de pareamento vem de halma.matchmaking.policy (fifo ou rating).
+    private static final Matchmaker matchmaker =
+            new Matchmaker(PairingPolicy.byName(System.getProperty("halma.matchmaking.policy", "fifo")));
+    // Prazo para o cliente enviar o SET_NAME depois de ligar; quem não se identifica é desligado
+    // (0 = sem prazo, em todos os modos).
+    static final int HANDSHAKE_TIMEOUT_MILLIS = Integer.getInteger("halma.server.handshakeSeconds", 10) * 1000;
+    private static final int DEFAULT_RATING = 1500;
 
-        if (portStr == null) { // Se o usuário cancelar
-            System.exit(0);
-        }
+    // "blocking" (padrão): uma thread de plataforma por ligação. "virtual": uma thread virtual por
+    // ligação e por sessão. "nio": seletores com um pequeno grupo fixo de threads de E/S.
+    private static final String SERVER_MODE = System.getProperty("halma.server.mode", "blocking");
+    private static final int IO_THREADS = Integer.getInteger("halma.server.ioThreads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
 
-        try {
-            int port = Integer.parseInt(portStr.toString());
-            if (port <= 0 || port > 65535) {
-                throw new NumberFormatException();
-            }
+    // Limite de ligações abertas em simultâneo (0 = sem limite); as que passam dele são fechadas logo.
+    private static final int MAX_CONNECTIONS = Integer.getInteger("halma.server.maxConnections", 0);
+    // Porta do endpoint HTTP de estado (0 = desligado), ver StatusEndpoint.
+    private static final int STATUS_PORT = Integer.getInteger("halma.server.statusPort", 0);
 
-            SwingUtilities.invokeLater(() -> createAndShowGUI(port));
-            runServerLogic(port);
+    private static final AtomicInteger openConnections = new AtomicInteger();
+    private static final long startedAt = System.currentTimeMillis();
+    private static volatile int listeningPort = -1;
 
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(null, "Porta inválida. O servidor não será iniciado.", "Erro", JOptionPane.ERROR_MESSAGE);
-            System.exit(1);
-        }
-    }
+    // Onde correm os ClientHandler (a leitura de cada ligação); escolhido em runServerLogic conforme o modo.
+    private static volatile Executor taskExecutor = HalmaServer::startPlatformThread;
+    // Onde corre a escrita das ligações nos modos blocking e virtual (ver ClientHandler.flushOutput). Uma
+    // tarefa só existe enquanto a ligação tem bytes por escrever, por isso as threads de plataforma
+    // ficam num grupo partilhado em vez de uma por ligação, e as ociosas terminam ao fim de um minuto.
+    private static final Executor platformWriters = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "halma-write");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile Executor writeExecutor = platformWriters;
 
-    private static void createAndShowGUI(int port) {
-        JFrame frame = new JFrame("Status do Servidor Halma");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(400, 200);
-        JLabel statusLabel = new JLabel("Servidor online na porta " + port + ". Aguardando jogadores...", SwingConstants.CENTER);
-        statusLabel.setFont(new Font("Arial", Font.BOLD, 16));
-        frame.add(statusLabel);
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+    /**
+     * Arranque com janelas: pede a porta e mostra a janela de estado. Para correr sem ecrã, com
+     * opções na linha de comandos ou num ficheiro, ver {@link ServerLauncher}.
+     */
+    public static void main(String[] args) {
+        int port = ServerStatusWindow.askPort();
+        ServerStatusWindow.show(port);
+        runServerLogic(port);
     }
 
-    private static void runServerLogic(int port) {
-        System.out.println("Halma Server em execução na porta " + port + "...");
+    static void runServerLogic(int port) {
+        taskExecutor = createTaskExecutor(SERVER_MODE);
+        if ("virtual".equals(SERVER_MODE)) writeExecutor = taskExecutor;
+        matchmaker.start();
+        Metrics.registerMBean();
+        // Antes de aceitar ligações, para as fichas de retoma das partidas recuperadas já valerem.
+        for (GameJournal.RecoveredGame game : GameJournal.start()) GameSession.restore(game);
+        if (STATUS_PORT > 0) StatusEndpoint.start(STATUS_PORT);
+        if ("nio".equals(SERVER_MODE)) {
+            try {
+                new NioServer(port, IO_THREADS).run();
+            } catch (IOException e) {
+                LOG.error("Erro no servidor", e);
+            }
+            return;
+        }
+
         try (ServerSocket serverSocket = new ServerSocket(port)) {
+            markReady(serverSocket.getLocalPort());
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                System.out.println("Novo cliente conectado: " + clientSocket.getInetAddress());
-
-                ClientHandler clientHandler = new ClientHandler(clientSocket);
+                LOG.debug("Novo cliente conectado: ", clientSocket.getInetAddress());
+                if (!connectionOpened()) {
+                    LOG.warn("Limite de ligações atingido; recusando ", clientSocket.getInetAddress());
+                    clientSocket.close();
+                    continue;
+                }
 
                 try {
-                    BufferedReader in = clientHandler.getInputStream();
-                    String nameLine = in.readLine();
-
-                    if (nameLine != null && nameLine.startsWith(Protocol.SET_NAME)) {
-                        String playerName = nameLine.split(Protocol.SEPARATOR, 2)[1];
-                        clientHandler.setPlayerName(playerName);
-                        System.out.println("SERVER: Nome do jogador definido como: " + playerName);
-
-                        synchronized (waitingClients) {
-                            waitingClients.add(clientHandler);
-                            clientHandler.start();
-
-                            if (waitingClients.size() >= 2) {
-                                ClientHandler player1 = waitingClients.remove(0);
-                                ClientHandler player2 = waitingClients.remove(0);
-                                System.out.println("Pareando jogadores '" + player1.getPlayerName() + "' e '" + player2.getPlayerName() + "'.");
-                                GameSession gameSession = new GameSession(player1, player2);
-                                new Thread(gameSession).start();
-                            }
-                        }
-                    } else {
-                        System.err.println("Erro: Primeira mensagem do cliente não foi SET_NAME. Desconectando.");
-                        clientSocket.close();
-                    }
+                    // As mensagens já são agrupadas por comando (ver ClientHandler.holdOutput), por isso o
+                    // algoritmo de Nagle só atrasaria o envio de cada lote.
+                    clientSocket.setTcpNoDelay(true);
+                    ClientHandler.enableKeepAlive(clientSocket);
                 } catch (IOException e) {
-                    System.err.println("Erro ao comunicar com o cliente. Desconectando. " + e.getMessage());
-                    clientSocket.close();
+                    LOG.warn("Não foi possível configurar o socket: ", e.getMessage());
                 }
+                // O SET_NAME é lido na thread do próprio cliente, com prazo: um cliente que liga e não
+                // envia nada não atrasa as ligações seguintes.
+                taskExecutor.execute(new ClientHandler(clientSocket));
             }
         } catch (IOException e) {
-            System.err.println("Erro no servidor: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Erro no servidor", e);
+        }
+    }
+
+    /**
+     * Executor de tarefas para o modo pedido. No modo NIO as mensagens só são enfileiradas, por isso
+     * a sessão arranca na própria thread que fez o pareamento. As threads virtuais (Java 21+) são
+     * obtidas por reflexão para o servidor continuar a compilar e a correr em JDKs mais antigos;
+     * lá o modo "virtual" é recusado, em vez de correr em silêncio com threads de plataforma.
+     */
+    private static Executor createTaskExecutor(String mode) {
+        if ("nio".equals(mode)) return Runnable::run;
+        if ("virtual".equals(mode)) {
+            try {
+                Executor executor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                LOG.info("Modo de threads virtuais.");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("O modo virtual precisa de threads virtuais (Java 21 ou mais recente); esta JVM é "
+                        + Runtime.version() + ". Use --mode=blocking ou --mode=nio.", e);
+            }
+        }
+        return HalmaServer::startPlatformThread;
+    }
+
+    private static void startPlatformThread(Runnable runnable) {
+        new Thread(runnable).start();
+    }
+
+    static Executor writeExecutor() {
+        return writeExecutor;
+    }
+
+    /**
+     * Chamado quando o socket do jogo já está a escutar. A linha na saída padrão é o sinal de
+     * prontidão para quem arranca o servidor por script (ver {@link ServerLauncher}).
+     */
+    static void markReady(int port) {
+        listeningPort = port;
+        LOG.info("Halma Server em execução na porta ", port, "...");
+        System.out.println("HALMA READY port=" + port + " mode=" + SERVER_MODE);
+        System.out.flush();
+    }
+
+    static boolean isReady() {
+        return listeningPort >= 0;
+    }
+
+    /** Conta uma nova ligação; devolve false (e não a conta) se o limite já foi atingido. */
+    static boolean connectionOpened() {
+        while (true) {
+            int open = openConnections.get();
+            if (MAX_CONNECTIONS > 0 && open >= MAX_CONNECTIONS) {
+                Metrics.connectionRejected();
+                return false;
+            }
+            if (openConnections.compareAndSet(open, open + 1)) {
+                Metrics.connectionAccepted();
+                return true;
+            }
+        }
+    }
+
+    static void connectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    static int openConnections() {
+        return openConnections.get();
+    }
+
+    static int waitingCount() {
+        return matchmaker.waitingCount();
+    }
+
+    /** Estado resumido para o endpoint HTTP. */
+    static String statusJson() {
+        return "{\"ready\":" + isReady()
+                + ",\"port\":" + listeningPort
+                + ",\"mode\":\"" + SERVER_MODE + "\""
+                + ",\"uptimeSeconds\":" + (System.currentTimeMillis() - startedAt) / 1000
+                + ",\"connections\":" + openConnections.get()
+                + ",\"waiting\":" + matchmaker.waitingCount()
+                + ",\"sessions\":" + GameSession.activeSessions()
+                + "}";
+    }
+
+    /**
+     * Trata a primeira linha de um cliente (SET_NAME, com opções) e entrega-o ao {@link Matchmaker}
+     * na fila do tabuleiro pedido. Comum aos modos bloqueante e NIO.
+     *
+     * @return false se a linha não for um SET_NAME (o chamador deve desligar o cliente).
+     */
+    static boolean registerPlayer(ClientHandler clientHandler, String nameLine) {
+        if (nameLine == null || !nameLine.startsWith(Protocol.SET_NAME)) return false;
+        Metrics.messageIn();
+
+        Map<String, String> options = new HashMap<>();
+        String[] parts = nameLine.split(Protocol.SEPARATOR, 2);
+        String playerName = extractOptions(parts.length > 1 ? parts[1] : "", options);
+        clientHandler.setPlayerName(playerName);
+        LOG.debug("Nome do jogador definido como: ", playerName);
+
+        Geometry geometry = Geometry.byId(options.getOrDefault(Protocol.OPTION_MODE, Geometry.CLASSIC.getId()));
+        if (geometry == null) geometry = Geometry.CLASSIC;
+        // Um codec desconhecido é ignorado: sem a confirmação o cliente continua em texto.
+        if (BinaryCodec.NAME.equals(options.get(Protocol.OPTION_CODEC))) clientHandler.enableBinaryCodec();
+
+        clientHandler.setRating(parseRating(options.get(Protocol.OPTION_RATING)));
+
+        clientHandler.startHeartbeat();
+
+        String resumeToken = options.get(Protocol.OPTION_RESUME);
+        GameSession session = resumeToken != null ? SessionRegistry.findByToken(resumeToken) : null;
+        if (session != null) {
+            session.resume(clientHandler, resumeToken);
+            return true;
+        }
+
+        String watch = options.get(Protocol.OPTION_WATCH);
+        if (watch != null) {
+            GameSession watched = SessionRegistry.findForWatching(watch);
+            if (watched != null) watched.addSpectator(clientHandler);
+            else clientHandler.sendMessage(Protocol.INFO + Protocol.SEPARATOR + "Nenhuma partida em curso para assistir.");
+            return true;
+        }
+
+        // Enviado antes de entrar na fila, para nunca chegar depois do início da partida.
+        clientHandler.sendMessage(Protocol.INFO + Protocol.SEPARATOR + "Aguardando oponente...");
+        enqueue(clientHandler, geometry);
+        return true;
+    }
+
+    /** Põe o cliente na fila de espera do tabuleiro {@code geometry}. */
+    static void enqueue(ClientHandler clientHandler, Geometry geometry) {
+        matchmaker.enqueue(clientHandler, geometry);
+    }
+
+    /** Tira da fila de espera um cliente que saiu antes de ser pareado. */
+    static void leaveQueue(ClientHandler clientHandler) {
+        matchmaker.leave(clientHandler);
+    }
+
+    private static int parseRating(String value) {
+        if (value == null) return DEFAULT_RATING;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_RATING;
+        }
+    }
+
+    /**
+     * Separa o nome do jogador das opções CHAVE=valor que o cliente pode acrescentar ao SET_NAME.
+     * Clientes antigos não enviam opções, e o conteúdo inteiro continua a ser o nome.
+     */
+    static String extractOptions(String payload, Map<String, String> options) {
+        String[] tokens = payload.split(Protocol.SEPARATOR, -1);
+        int nameEnd = tokens.length;
+        while (nameEnd > 1 && tokens[nameEnd - 1].matches("[A-Z_]+=.*")) {
+            nameEnd--;
+            String[] option = tokens[nameEnd].split("=", 2);
+            options.put(option[0], option[1]);
         }
+        return String.join(Protocol.SEPARATOR, java.util.Arrays.copyOfRange(tokens, 0, nameEnd));
     }
-}
\ No newline at end of file
+}
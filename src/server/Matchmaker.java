@@ -0,0 +1,173 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import game.Geometry;
+import shared.Log;
+import shared.Protocol;
+
+/**
+ * Fila de espera e pareamento, sem locks. Quem entra ou sai só publica o pedido (uma fila
+ * concorrente para as entradas, uma marca no handler para as saídas) e pede uma ronda; as
+ * rondas correm uma de cada vez, na thread que as pediu primeiro, e só essa thread mexe nas
+ * filas por tabuleiro. A {@link PairingPolicy} decide quem joga com quem.
+ *
+ * Uma vez por segundo há também uma ronda de manutenção: tira da fila os clientes cujas
+ * ligações já caíram, pareia com o bot quem está sozinho há mais de {@code halma.bot.waitSeconds}
+ * e desliga quem espera há mais de {@code halma.matchmaking.maxWaitSeconds} (0 = sem limite).
+ */
+final class Matchmaker {
+    private static final Log LOG = Log.get("server");
+    // Depois deste tempo sozinho na fila, o jogador enfrenta o bot do servidor (0 desativa).
+    private static final long BOT_WAIT_MILLIS = Long.getLong("halma.bot.waitSeconds", 30) * 1000;
+    private static final long MAX_WAIT_MILLIS = Long.getLong("halma.matchmaking.maxWaitSeconds", 0) * 1000;
+
+    private final PairingPolicy policy;
+    private final ConcurrentLinkedQueue<Arrival> arrivals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestedRounds = new AtomicInteger();
+    private final AtomicBoolean departures = new AtomicBoolean();
+    private volatile boolean maintenanceDue = false;
+    private volatile int waitingCount = 0;
+
+    // Só usado dentro de uma ronda.
+    private final Map<Geometry, ArrayDeque<ClientHandler>> queues = new HashMap<>();
+
+    private static final class Arrival {
+        final ClientHandler handler;
+        final Geometry geometry;
+
+        Arrival(ClientHandler handler, Geometry geometry) {
+            this.handler = handler;
+            this.geometry = geometry;
+        }
+    }
+
+    Matchmaker(PairingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /** Arranca a ronda de manutenção periódica. */
+    void start() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "halma-matchmaker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            maintenanceDue = true;
+            requestRound();
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    void enqueue(ClientHandler handler, Geometry geometry) {
+        handler.setWaitingSince(System.currentTimeMillis());
+        arrivals.add(new Arrival(handler, geometry));
+        requestRound();
+    }
+
+    /** Tira da fila um cliente que saiu antes de ser pareado; não faz nada se já estiver numa partida. */
+    void leave(ClientHandler handler) {
+        handler.markLeftQueue();
+        departures.set(true);
+        requestRound();
+    }
+
+    /**
+     * Corre rondas até não haver pedidos pendentes. Se outra thread já estiver a correr, só conta
+     * o pedido: essa thread faz mais uma ronda antes de sair.
+     */
+    private void requestRound() {
+        if (requestedRounds.getAndIncrement() != 0) return;
+        int pending = 1;
+        do {
+            try {
+                round();
+            } catch (RuntimeException e) {
+                LOG.error("Erro no pareamento", e);
+            }
+            pending = requestedRounds.addAndGet(-pending);
+        } while (pending != 0);
+    }
+
+    private void round() {
+        long now = System.currentTimeMillis();
+        Arrival arrival;
+        while ((arrival = arrivals.poll()) != null) {
+            if (arrival.handler.hasLeftQueue()) continue;
+            queues.computeIfAbsent(arrival.geometry, g -> new ArrayDeque<>()).add(arrival.handler);
+        }
+
+        boolean maintenance = maintenanceDue;
+        maintenanceDue = false;
+        boolean removeDepartures = departures.getAndSet(false);
+        int waitingNow = 0;
+
+        for (Map.Entry<Geometry, ArrayDeque<ClientHandler>> entry : queues.entrySet()) {
+            Geometry geometry = entry.getKey();
+            ArrayDeque<ClientHandler> queue = entry.getValue();
+            if (removeDepartures || maintenance) removeGone(queue, maintenance);
+
+            ClientHandler[] group;
+            while ((group = policy.nextGroup(queue, geometry.getPlayerCount(), now)) != null) {
+                LOG.info("Pareando ", group.length, " jogadores no tabuleiro ", geometry.getId());
+                new GameSession(geometry, group).start();
+            }
+
+            if (maintenance) {
+                pairLonePlayerWithBot(geometry, queue, now);
+                expireLongWaits(queue, now);
+            }
+            waitingNow += queue.size();
+        }
+        waitingCount = waitingNow;
+    }
+
+    /** Jogadores na fila no fim da última ronda. */
+    int waitingCount() {
+        return waitingCount;
+    }
+
+    /** Tira os que saíram e, na manutenção, também os que perderam a ligação sem avisar. */
+    private static void removeGone(ArrayDeque<ClientHandler> queue, boolean checkConnections) {
+        for (Iterator<ClientHandler> it = queue.iterator(); it.hasNext(); ) {
+            ClientHandler handler = it.next();
+            if (handler.hasLeftQueue()) {
+                it.remove();
+            } else if (checkConnections && !handler.isConnected()) {
+                LOG.info("Removendo da fila o cliente sem ligação: ", handler.getPlayerName());
+                it.remove();
+            }
+        }
+    }
+
+    /** Pareia com o bot quem está sozinho na fila de um tabuleiro de 2 jogadores há mais de BOT_WAIT_MILLIS. */
+    private static void pairLonePlayerWithBot(Geometry geometry, ArrayDeque<ClientHandler> queue, long now) {
+        if (BOT_WAIT_MILLIS <= 0 || !BotClientHandler.supports(geometry) || queue.size() != 1) return;
+        if (now - queue.peek().getWaitingSince() < BOT_WAIT_MILLIS) return;
+
+        ClientHandler human = queue.poll();
+        LOG.info("Pareando '", human.getPlayerName(), "' com o bot no tabuleiro ", geometry.getId());
+        new GameSession(geometry, human, new BotClientHandler()).start();
+    }
+
+    private static void expireLongWaits(ArrayDeque<ClientHandler> queue, long now) {
+        if (MAX_WAIT_MILLIS <= 0) return;
+        for (Iterator<ClientHandler> it = queue.iterator(); it.hasNext(); ) {
+            ClientHandler handler = it.next();
+            if (now - handler.getWaitingSince() < MAX_WAIT_MILLIS) continue;
+            it.remove();
+            LOG.info("Tempo de espera esgotado para ", handler.getPlayerName());
+            handler.sendMessage(Protocol.ERROR + Protocol.SEPARATOR + "Nenhum oponente encontrado. Tente novamente mais tarde.");
+            handler.shutdown();
+        }
+    }
+}
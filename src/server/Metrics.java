@@ -0,0 +1,315 @@
+package server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+import shared.Log;
+import shared.Protocol;
+
+/**
+ * Métricas do servidor: ligações, mensagens e bytes em cada sentido, fila de espera, sessões,
+ * partidas terminadas por desfecho e o tempo de cada comando de jogo em
+ * {@link GameSession#processMessage}. Os contadores são {@link LongAdder} (células por thread,
+ * sem bloqueios nem disputa de uma única variável), por isso podem ser tocados nos caminhos
+ * quentes de qualquer thread. As taxas obtêm-se dos contadores monotónicos do lado de quem lê.
+ *
+ * Lidas por JMX ({@code halma:type=Metrics}, ver {@link #registerMBean()}) e em texto no formato
+ * de exposição do Prometheus em {@code GET /metrics} do {@link StatusEndpoint}.
+ */
+final class Metrics {
+    private static final Log LOG = Log.get("server");
+
+    static final String OUTCOME_VICTORY = "victory";
+    static final String OUTCOME_FORFEIT = "forfeit";
+    static final String OUTCOME_DISCONNECT = "disconnect";
+    static final String OUTCOME_TIMEOUT = "timeout";
+
+    // Comandos com histograma de tempo; os restantes só contam como mensagens recebidas.
+    private static final String[] TIMED_COMMANDS = { Protocol.MOVE, Protocol.MOVE_PATH, Protocol.GET_VALID_MOVES, Protocol.CHAT };
+
+    private static final LongAdder connectionsAccepted = new LongAdder();
+    private static final LongAdder connectionsRejected = new LongAdder();
+    private static final LongAdder messagesIn = new LongAdder();
+    private static final LongAdder messagesOut = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final Map<String, LongAdder> gamesFinished = new LinkedHashMap<>();
+    private static final Map<String, Histogram> commandTimes = new LinkedHashMap<>();
+
+    static {
+        for (String outcome : new String[] { OUTCOME_VICTORY, OUTCOME_FORFEIT, OUTCOME_DISCONNECT, OUTCOME_TIMEOUT }) {
+            gamesFinished.put(outcome, new LongAdder());
+        }
+        for (String command : TIMED_COMMANDS) commandTimes.put(command, new Histogram());
+    }
+
+    private Metrics() {}
+
+    static void connectionAccepted() { connectionsAccepted.increment(); }
+    static void connectionRejected() { connectionsRejected.increment(); }
+    static void messageIn() { messagesIn.increment(); }
+    static void messageOut() { messagesOut.increment(); }
+    static void bytesIn(long bytes) { bytesIn.add(bytes); }
+    static void bytesOut(long bytes) { bytesOut.add(bytes); }
+
+    static void gameFinished(String outcome) {
+        gamesFinished.get(outcome).increment();
+    }
+
+    /**
+     * Regista o tempo de um comando, desde a chegada a {@code processMessage} até ao fim do
+     * tratamento na thread da sessão (inclui a espera na caixa de correio). Sem alocações.
+     */
+    static void commandHandled(String message, long startNanos) {
+        for (String command : TIMED_COMMANDS) {
+            if (message.startsWith(command)
+                    && (message.length() == command.length() || message.startsWith(Protocol.SEPARATOR, command.length()))) {
+                commandTimes.get(command).record(System.nanoTime() - startNanos);
+                return;
+            }
+        }
+    }
+
+    /** Conta os bytes lidos do socket no modo bloqueante (o NIO conta-os no próprio laço). */
+    static InputStream counting(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytesIn.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) bytesIn.add(read);
+                return read;
+            }
+        };
+    }
+
+    static OutputStream counting(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                bytesOut.add(length);
+            }
+        };
+    }
+
+    /**
+     * Histograma com limites fixos (em segundos, como o Prometheus espera): um {@link LongAdder}
+     * por balde mais a soma, para registar de muitas threads sem disputa.
+     */
+    static final class Histogram {
+        private static final double[] BOUNDS_SECONDS = {
+            0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5 };
+        private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+
+        static {
+            for (int i = 0; i < BOUNDS_SECONDS.length; i++) BOUNDS_NANOS[i] = (long) (BOUNDS_SECONDS[i] * 1e9);
+        }
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1]; // o último é +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        long[] counts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < counts.length; i++) counts[i] = buckets[i].sum();
+            return counts;
+        }
+
+        /** Limite superior do balde do quantil {@code q}, em microssegundos (-1 sem amostras ou acima do último limite). */
+        static long quantileMicros(long[] counts, double q) {
+            long total = 0;
+            for (long count : counts) total += count;
+            if (total == 0) return -1;
+            long target = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+                seen += counts[i];
+                if (seen >= target) return BOUNDS_NANOS[i] / 1000;
+            }
+            return -1;
+        }
+    }
+
+    /** Todas as métricas em texto, no formato de exposição 0.0.4 do Prometheus. */
+    static String prometheus() {
+        StringBuilder text = new StringBuilder(4096);
+        gauge(text, "halma_connections_open", "Ligações abertas.", HalmaServer.openConnections());
+        counter(text, "halma_connections_accepted_total", "Ligações aceites.", connectionsAccepted.sum());
+        counter(text, "halma_connections_rejected_total", "Ligações recusadas pelo limite de ligações.", connectionsRejected.sum());
+        gauge(text, "halma_waiting_players", "Jogadores na fila de espera.", HalmaServer.waitingCount());
+        gauge(text, "halma_sessions_live", "Partidas em curso.", GameSession.activeSessions());
+
+        header(text, "halma_messages_total", "Mensagens do protocolo, por sentido.", "counter");
+        text.append("halma_messages_total{direction=\"in\"} ").append(messagesIn.sum()).append('\n');
+        text.append("halma_messages_total{direction=\"out\"} ").append(messagesOut.sum()).append('\n');
+        header(text, "halma_bytes_total", "Bytes no socket, por sentido.", "counter");
+        text.append("halma_bytes_total{direction=\"in\"} ").append(bytesIn.sum()).append('\n');
+        text.append("halma_bytes_total{direction=\"out\"} ").append(bytesOut.sum()).append('\n');
+
+        header(text, "halma_games_finished_total", "Partidas terminadas, por desfecho.", "counter");
+        for (Map.Entry<String, LongAdder> entry : gamesFinished.entrySet()) {
+            text.append("halma_games_finished_total{outcome=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue().sum()).append('\n');
+        }
+
+        header(text, "halma_command_duration_seconds", "Tempo de cada comando na sessão, incluindo a espera na fila.", "histogram");
+        for (Map.Entry<String, Histogram> entry : commandTimes.entrySet()) {
+            String label = "command=\"" + entry.getKey() + "\"";
+            long[] counts = entry.getValue().counts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < Histogram.BOUNDS_SECONDS.length ? Double.toString(Histogram.BOUNDS_SECONDS[i]) : "+Inf";
+                text.append("halma_command_duration_seconds_bucket{").append(label).append(",le=\"").append(le).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+            text.append("halma_command_duration_seconds_sum{").append(label).append("} ")
+                .append(String.format(Locale.ROOT, "%.9f", entry.getValue().sumNanos.sum() / 1e9)).append('\n');
+            text.append("halma_command_duration_seconds_count{").append(label).append("} ").append(cumulative).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "gauge");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "counter");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /** As mesmas métricas como atributos JMX; os histogramas aparecem como contagem, média e p99. */
+    static Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("ConnectionsOpen", (long) HalmaServer.openConnections());
+        values.put("ConnectionsAccepted", connectionsAccepted.sum());
+        values.put("ConnectionsRejected", connectionsRejected.sum());
+        values.put("WaitingPlayers", (long) HalmaServer.waitingCount());
+        values.put("LiveSessions", (long) GameSession.activeSessions());
+        values.put("MessagesIn", messagesIn.sum());
+        values.put("MessagesOut", messagesOut.sum());
+        values.put("BytesIn", bytesIn.sum());
+        values.put("BytesOut", bytesOut.sum());
+        for (Map.Entry<String, LongAdder> entry : gamesFinished.entrySet()) {
+            values.put("GamesFinished_" + entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, Histogram> entry : commandTimes.entrySet()) {
+            long[] counts = entry.getValue().counts();
+            long count = 0;
+            for (long c : counts) count += c;
+            values.put(entry.getKey() + "_Count", count);
+            values.put(entry.getKey() + "_MeanMicros", count == 0 ? 0 : entry.getValue().sumNanos.sum() / count / 1000);
+            values.put(entry.getKey() + "_P99Micros", Histogram.quantileMicros(counts, 0.99));
+        }
+        return values;
+    }
+
+    /** Publica as métricas no servidor de MBeans da plataforma; chamado uma vez no arranque. */
+    static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName("halma:type=Metrics"));
+        } catch (JMException e) {
+            LOG.warn("Não foi possível registar as métricas em JMX: ", e.getMessage());
+        }
+    }
+
+    /** MBean só de leitura cujos atributos são as chaves de {@link #snapshot()}. */
+    private static final class MetricsMBean implements DynamicMBean {
+        private final MBeanInfo info;
+
+        MetricsMBean() {
+            Map<String, Long> values = snapshot();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (String name : values.keySet()) {
+                attributes[i++] = new MBeanAttributeInfo(name, "long", name, true, false, false);
+            }
+            info = new MBeanInfo(Metrics.class.getName(), "Métricas do servidor Halma", attributes, null, null, null);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long value = snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Long> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (values.containsKey(name)) list.add(new Attribute(name, values.get(name)));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Só de leitura: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList(Collections.emptyList());
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import shared.BinaryCodec;
+import shared.Log;
+import shared.Protocol;
+
+/**
+ * Ligação de um jogador no modo NIO. Não tem thread própria: o {@link NioServer.IoLoop} dono
+ * do canal chama {@link #onReadable()} e {@link #onWritable()}. As linhas do protocolo são
+ * separadas diretamente no {@link ByteBuffer} de leitura e entregues à {@link GameSession}
+ * tal como no modo bloqueante; as respostas ficam numa fila e são escritas pelo laço de E/S.
+ * Depois de negociado o {@link BinaryCodec}, o mesmo buffer é lido como tramas em vez de linhas.
+ */
+final class NioClientHandler extends ClientHandler {
+    private static final Log LOG = Log.get("net");
+    private static final Log PROTOCOL_LOG = Log.get("protocol");
+    private static final int INITIAL_BUFFER = 1024;
+    // Uma linha maior do que isto não é um cliente legítimo: a ligação é fechada.
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final NioServer.IoLoop loop;
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    private final ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER]; // só usado pela thread do laço
+    private boolean registered = false;
+    private final long handshakeDeadline = System.currentTimeMillis() + HalmaServer.HANDSHAKE_TIMEOUT_MILLIS;
+    private volatile boolean binaryCodec = false;
+    private final String[] decoded = new String[1];
+    private volatile boolean closed = false;
+
+    NioClientHandler(SocketChannel channel, NioServer.IoLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    long handshakeDeadline() {
+        return handshakeDeadline;
+    }
+
+    boolean awaitingHandshake() {
+        return !registered && !closed;
+    }
+
+    /** O prazo do SET_NAME passou sem ele chegar. Só corre na thread do laço. */
+    void expireHandshake() {
+        LOG.info("Cliente não enviou o SET_NAME a tempo: ", channel.socket().getInetAddress());
+        close();
+    }
+
+    @Override
+    boolean isConnected() {
+        return !closed;
+    }
+
+    /** Lê o que estiver disponível e entrega cada linha completa. Só corre na thread do laço. */
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (read < 0) {
+            close();
+            return;
+        }
+        if (read > 0) {
+            markReceived();
+            Metrics.bytesIn(read);
+        }
+
+        readBuffer.flip();
+        byte[] bytes = readBuffer.array();
+        int lineStart = readBuffer.position();
+        int limit = readBuffer.limit();
+        for (int i = lineStart; i < limit && !closed; i++) {
+            if (binaryCodec) {
+                // O SET_NAME que ativou o codec pode ter chegado no mesmo bloco que as primeiras tramas.
+                int consumed = BinaryCodec.tryDecode(bytes, lineStart, limit, MAX_LINE, decoded);
+                if (consumed < 0) {
+                    LOG.warn("Trama inválida de ", getPlayerName(), ". Desconectando.");
+                    close();
+                    return;
+                }
+                if (consumed == 0) break;
+                lineStart += consumed;
+                i = lineStart - 1;
+                onLine(decoded[0]);
+                continue;
+            }
+            if (bytes[i] != '\n') continue;
+            int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+            onLine(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+            lineStart = i + 1;
+        }
+        readBuffer.position(lineStart);
+        readBuffer.compact();
+
+        if (!readBuffer.hasRemaining()) {
+            if (readBuffer.capacity() >= MAX_LINE) {
+                LOG.warn("Linha demasiado longa de ", getPlayerName(), ". Desconectando.");
+                close();
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+    }
+
+    private void onLine(String line) {
+        PROTOCOL_LOG.trace(getPlayerName(), " -> SERVER: ", line);
+        if (!registered) {
+            // A primeira linha tem de ser o SET_NAME, como no modo bloqueante.
+            registered = true;
+            if (!HalmaServer.registerPlayer(this, line)) {
+                LOG.warn("Primeira mensagem do cliente não foi SET_NAME. Desconectando.");
+                close();
+            }
+            return;
+        }
+        onMessage(line);
+    }
+
+    @Override
+    void enableBinaryCodec() {
+        // A confirmação ainda é enfileirada em texto; o que for lido a seguir já é tratado como tramas.
+        sendMessage(Protocol.CODEC + Protocol.SEPARATOR + BinaryCodec.NAME);
+        binaryCodec = true;
+    }
+
+    /** Enfileira a mensagem; pode ser chamado de qualquer thread. */
+    @Override
+    public void sendMessage(String message) {
+        if (closed) return;
+        PROTOCOL_LOG.trace("SERVER -> ", getPlayerName(), ": ", message);
+        byte[] bytes = binaryCodec ? BinaryCodec.encode(message) : (message + "\n").getBytes(StandardCharsets.UTF_8);
+        enqueue(bytes);
+        if (isOutputHeld()) scheduleDelayedFlush();
+        else flushOutput();
+    }
+
+    /** Os bytes da trama partilhada vão tal como estão para a fila; o laço só os lê. */
+    @Override
+    void sendShared(SharedFrame frame) {
+        if (closed) return;
+        PROTOCOL_LOG.trace("SERVER -> ", getPlayerName(), ": ", frame.message());
+        enqueue(frame.bytes(binaryCodec));
+        flushOutput();
+    }
+
+    private void enqueue(byte[] bytes) {
+        if (!reserveOutput(bytes.length)) return;
+        Metrics.messageOut();
+        outbound.add(ByteBuffer.wrap(bytes));
+    }
+
+    /** Pede ao laço de E/S que escreva a fila; pode ser chamado de qualquer thread. */
+    @Override
+    void flushOutput() {
+        if (!outbound.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * Escreve a fila até esvaziar ou até o socket não aceitar mais; nesse caso espera por OP_WRITE.
+     * As mensagens pendentes seguem numa escrita agrupada, em vez de uma chamada por mensagem.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (closed) return;
+        try {
+            while (!outbound.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : outbound) {
+                    gather[count++] = buffer;
+                    if (count == gather.length) break;
+                }
+                Metrics.bytesOut(channel.write(gather, 0, count));
+                for (int i = 0; i < count; i++) {
+                    if (gather[i].hasRemaining()) break;
+                    outbound.poll();
+                    addPendingBytes(-gather[i].capacity());
+                }
+                boolean blocked = gather[count - 1].hasRemaining();
+                Arrays.fill(gather, 0, count, null);
+                if (blocked) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void close() {
+        if (closed) return;
+        closed = true;
+        outbound.clear();
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Erro ao fechar o cliente: ", e.getMessage());
+        }
+
+        HalmaServer.connectionClosed();
+        LOG.info("Cliente desconectado: ", getPlayerName());
+        connectionLost();
+    }
+
+    @Override
+    public void shutdown() {
+        if (loop.inLoop()) close();
+        else loop.execute(this::close);
+    }
+}
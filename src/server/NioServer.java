@@ -0,0 +1,147 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import shared.Log;
+
+/**
+ * Núcleo do servidor orientado a eventos: a thread que chama {@link #run()} aceita ligações
+ * e distribui-as, em rotação, por um pequeno grupo fixo de {@link IoLoop}s. Cada laço tem o
+ * seu seletor e faz toda a leitura e escrita não bloqueante das ligações que lhe pertencem,
+ * por isso o número de threads não depende do número de jogadores ligados.
+ */
+final class NioServer {
+    private static final Log LOG = Log.get("net");
+
+    private final int port;
+    private final IoLoop[] loops;
+
+    NioServer(int port, int ioThreads) throws IOException {
+        this.port = port;
+        this.loops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) loops[i] = new IoLoop("halma-io-" + (i + 1));
+    }
+
+    void run() throws IOException {
+        for (IoLoop loop : loops) loop.start();
+        LOG.info("Modo NIO com ", loops.length, " thread(s) de E/S.");
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            HalmaServer.markReady(server.socket().getLocalPort());
+            int next = 0;
+            while (true) {
+                SocketChannel channel = server.accept();
+                LOG.debug("Novo cliente conectado: ", channel.socket().getInetAddress());
+                if (!HalmaServer.connectionOpened()) {
+                    LOG.warn("Limite de ligações atingido; recusando ", channel.socket().getInetAddress());
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                ClientHandler.enableKeepAlive(channel.socket());
+                IoLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(channel));
+            }
+        }
+    }
+
+    /** Uma thread de E/S: um seletor mais uma fila de tarefas submetidas por outras threads. */
+    static final class IoLoop extends Thread {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Ligações ainda sem SET_NAME, por ordem de chegada (e portanto de prazo).
+        private final ArrayDeque<NioClientHandler> handshakes = new ArrayDeque<>();
+
+        IoLoop(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        /** Executa {@code task} nesta thread, acordando o seletor. */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == this;
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                NioClientHandler handler = new NioClientHandler(channel, this);
+                handler.attach(channel.register(selector, SelectionKey.OP_READ, handler));
+                // Com prazo 0 o SET_NAME pode demorar o que for, como o setSoTimeout(0) do modo bloqueante.
+                if (HalmaServer.HANDSHAKE_TIMEOUT_MILLIS > 0) handshakes.add(handler);
+            } catch (IOException e) {
+                LOG.warn("Erro ao registar o cliente: ", e.getMessage());
+                HalmaServer.connectionClosed();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // A ligação já está perdida.
+                }
+            }
+        }
+
+        /**
+         * Desliga as ligações cujo prazo de SET_NAME passou. Devolve quanto falta até ao próximo
+         * prazo, para o select acordar a tempo, ou 0 se não houver nenhuma ligação à espera.
+         */
+        private long expireHandshakes() {
+            long now = System.currentTimeMillis();
+            NioClientHandler handler;
+            while ((handler = handshakes.peek()) != null) {
+                if (!handler.awaitingHandshake()) {
+                    handshakes.poll();
+                } else if (handler.handshakeDeadline() <= now) {
+                    handshakes.poll();
+                    handler.expireHandshake();
+                } else {
+                    return handler.handshakeDeadline() - now;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    long timeout = expireHandshakes();
+                    if (timeout > 0) selector.select(timeout);
+                    else selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) task.run();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioClientHandler handler = (NioClientHandler) key.attachment();
+                        if (!key.isValid()) continue;
+                        if (key.isReadable()) handler.onReadable();
+                        if (key.isValid() && key.isWritable()) handler.onWritable();
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Erro no laço de E/S: ", e.getMessage());
+                } catch (RuntimeException e) {
+                    // Um erro numa sessão não pode derrubar as outras ligações desta thread.
+                    LOG.error("Erro inesperado no laço de E/S", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package server;
+
+import java.util.Deque;
+
+/**
+ * Regra que decide quem joga com quem dentro da fila de um tabuleiro. É chamada só pela thread
+ * que está a correr o {@link Matchmaker}, por isso pode mexer na fila sem sincronização.
+ * Escolhida com {@code -Dhalma.matchmaking.policy=fifo|rating}.
+ */
+interface PairingPolicy {
+    /**
+     * Escolhe um grupo de {@code groupSize} jogadores entre os que esperam (do mais antigo para
+     * o mais recente) e tira-os de {@code waiting}.
+     *
+     * @return o grupo, pela ordem de jogo, ou null se ainda não houver grupo possível.
+     */
+    ClientHandler[] nextGroup(Deque<ClientHandler> waiting, int groupSize, long now);
+
+    static PairingPolicy byName(String name) {
+        if ("rating".equals(name)) {
+            return new RatingBand(Integer.getInteger("halma.matchmaking.ratingBand", 200),
+                    Integer.getInteger("halma.matchmaking.bandGrowthPerSecond", 25));
+        }
+        return new Fifo();
+    }
+
+    /** Por ordem de chegada: os primeiros {@code groupSize} da fila. */
+    final class Fifo implements PairingPolicy {
+        @Override
+        public ClientHandler[] nextGroup(Deque<ClientHandler> waiting, int groupSize, long now) {
+            if (waiting.size() < groupSize) return null;
+            ClientHandler[] group = new ClientHandler[groupSize];
+            for (int i = 0; i < groupSize; i++) group[i] = waiting.poll();
+            return group;
+        }
+    }
+
+    /**
+     * Junta jogadores com rating próximo do do jogador que espera há mais tempo. A margem aceite
+     * cresce com a espera desse jogador, para que ninguém fique na fila indefinidamente só por
+     * ter um rating raro.
+     */
+    final class RatingBand implements PairingPolicy {
+        private final int baseBand;
+        private final int growthPerSecond;
+
+        RatingBand(int baseBand, int growthPerSecond) {
+            this.baseBand = baseBand;
+            this.growthPerSecond = growthPerSecond;
+        }
+
+        @Override
+        public ClientHandler[] nextGroup(Deque<ClientHandler> waiting, int groupSize, long now) {
+            if (waiting.size() < groupSize) return null;
+            ClientHandler[] group = new ClientHandler[groupSize];
+            for (ClientHandler anchor : waiting) {
+                long band = baseBand + (now - anchor.getWaitingSince()) / 1000 * growthPerSecond;
+                group[0] = anchor;
+                int size = 1;
+                for (ClientHandler other : waiting) {
+                    if (other == anchor || Math.abs(other.getRating() - anchor.getRating()) > band) continue;
+                    group[size++] = other;
+                    if (size == groupSize) break;
+                }
+                if (size == groupSize) {
+                    for (ClientHandler player : group) waiting.remove(player);
+                    return group;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuração do servidor sem ecrã, lida da linha de comandos e, opcionalmente, de um ficheiro
+ * de propriedades ({@code --config=servidor.properties}).
+ *
+ * O resto do servidor lê a configuração de propriedades de sistema {@code halma.*}, por isso
+ * cada opção é só um nome curto para uma delas ({@code --mode=nio} é {@code halma.server.mode});
+ * qualquer {@code --halma.<chave>=valor} também é aceite tal como está. Prioridade: opções da
+ * linha de comandos, depois {@code -D} da JVM, depois o ficheiro. Tem de ser aplicada antes de
+ * as classes do servidor serem carregadas (ver {@link ServerLauncher}).
+ */
+final class ServerConfig {
+    static final int DEFAULT_PORT = 12345;
+
+    private static final Map<String, String> ALIASES = new LinkedHashMap<>();
+    static {
+        ALIASES.put("port", "halma.server.port");
+        ALIASES.put("mode", "halma.server.mode");
+        ALIASES.put("io-threads", "halma.server.ioThreads");
+        ALIASES.put("session-threads", "halma.server.sessionThreads");
+        ALIASES.put("max-connections", "halma.server.maxConnections");
+        ALIASES.put("handshake-seconds", "halma.server.handshakeSeconds");
+        ALIASES.put("idle-seconds", "halma.net.idleSeconds");
+        ALIASES.put("output-backlog-kb", "halma.net.maxBacklogKb");
+        ALIASES.put("turn-seconds", "halma.game.turnSeconds");
+        ALIASES.put("resume-seconds", "halma.game.resumeGraceSeconds");
+        ALIASES.put("chat-rate", "halma.chat.ratePerSecond");
+        ALIASES.put("chat-history", "halma.chat.historySize");
+        ALIASES.put("journal-dir", "halma.journal.dir");
+        ALIASES.put("journal-sync-millis", "halma.journal.syncMillis");
+        ALIASES.put("spectator-backlog-kb", "halma.spectator.maxBacklogKb");
+        ALIASES.put("status-port", "halma.server.statusPort");
+        ALIASES.put("policy", "halma.matchmaking.policy");
+        ALIASES.put("max-wait-seconds", "halma.matchmaking.maxWaitSeconds");
+        ALIASES.put("bot-wait-seconds", "halma.bot.waitSeconds");
+        ALIASES.put("log-level", "halma.log.level");
+    }
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Uso: java -cp <classes> server.ServerLauncher [opções]",
+            "  --port=N               porta do jogo (padrão " + DEFAULT_PORT + "; 0 = qualquer porta livre)",
+            "  --mode=M               blocking | virtual (Java 21+) | nio",
+            "  --io-threads=N         threads de E/S no modo nio",
+            "  --session-threads=N    threads onde correm as partidas (padrão: uma por núcleo)",
+            "  --max-connections=N    limite de ligações abertas (0 = sem limite)",
+            "  --handshake-seconds=N  prazo para o cliente enviar o SET_NAME (0 = sem prazo)",
+            "  --idle-seconds=N       desliga quem fica calado este tempo, mesmo com PING, se já respondeu a um PING (0 = nunca)",
+            "  --output-backlog-kb=N  desliga quem deixa por ler mais do que isto (0 = sem limite)",
+            "  --turn-seconds=N       tempo de cada jogada; quem o esgota perde (0 = sem limite)",
+            "  --resume-seconds=N     tempo que o lugar de quem caiu fica guardado (0 = desiste logo)",
+            "  --chat-rate=N          mensagens de conversa por segundo por jogador (rajadas: --halma.chat.burst)",
+            "  --chat-history=N       mensagens de conversa guardadas por partida para o fim de jogo",
+            "  --journal-dir=D        diário das partidas em curso, retomadas depois de uma queda (vazio = desligado)",
+            "  --journal-sync-millis=N intervalo entre escritas do diário no disco (padrão 20)",
+            "  --spectator-backlog-kb=N atraso de envio a partir do qual um espectador salta eventos",
+            "  --status-port=N        endpoint HTTP GET /status nesta porta (0 = desligado)",
+            "  --policy=P             pareamento: fifo | rating",
+            "  --max-wait-seconds=N   tempo máximo na fila (0 = sem limite)",
+            "  --bot-wait-seconds=N   espera antes de jogar contra o bot (0 = sem bot)",
+            "  --log-level=L          TRACE | DEBUG | INFO | WARN | ERROR | OFF",
+            "  --halma.<chave>=valor  qualquer outra propriedade halma.*",
+            "  --config=ficheiro      ficheiro de propriedades com as mesmas chaves",
+            "  --gui                  mostra também a janela de estado (Swing)",
+            "  --help                 mostra esta ajuda");
+
+    private final Properties fromFile = new Properties();
+    private final Properties fromArgs = new Properties();
+    private boolean gui = false;
+    private boolean help = false;
+
+    private ServerConfig() {}
+
+    /** @throws IllegalArgumentException com uma mensagem para o utilizador se alguma opção for inválida. */
+    static ServerConfig parse(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            if (arg.equals("--gui")) {
+                config.gui = true;
+                continue;
+            }
+            if (arg.equals("--help") || arg.equals("-h")) {
+                config.help = true;
+                continue;
+            }
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Opção inválida: " + arg);
+            }
+            String key = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            if (key.equals("config")) {
+                config.loadFile(value);
+            } else {
+                config.fromArgs.setProperty(propertyName(key), value);
+            }
+        }
+        config.validate();
+        return config;
+    }
+
+    private void loadFile(String path) {
+        Properties raw = new Properties();
+        try (InputStream in = Files.newInputStream(Paths.get(path))) {
+            raw.load(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Não foi possível ler " + path + ": " + e.getMessage());
+        }
+        for (String key : raw.stringPropertyNames()) {
+            fromFile.setProperty(propertyName(key), raw.getProperty(key).trim());
+        }
+    }
+
+    private static String propertyName(String key) {
+        String property = ALIASES.get(key);
+        if (property != null) return property;
+        if (key.startsWith("halma.")) return key;
+        throw new IllegalArgumentException("Opção desconhecida: " + key);
+    }
+
+    private void validate() {
+        int port = intValue("halma.server.port", DEFAULT_PORT);
+        if (port < 0 || port > 65535) throw new IllegalArgumentException("Porta inválida: " + port);
+        String mode = value("halma.server.mode");
+        if (mode != null && !mode.equals("blocking") && !mode.equals("virtual") && !mode.equals("nio")) {
+            throw new IllegalArgumentException("Modo desconhecido: " + mode);
+        }
+        if ("virtual".equals(mode) && Runtime.version().feature() < 21) {
+            throw new IllegalArgumentException("O modo virtual precisa de Java 21 ou mais recente; esta JVM é " + Runtime.version());
+        }
+        for (String key : new String[] { "halma.server.ioThreads", "halma.server.sessionThreads", "halma.server.maxConnections",
+                "halma.server.handshakeSeconds", "halma.server.statusPort",
+                "halma.net.idleSeconds", "halma.net.maxBacklogKb", "halma.game.turnSeconds", "halma.game.resumeGraceSeconds",
+                "halma.spectator.maxBacklogKb", "halma.chat.historySize",
+                "halma.journal.segmentMb", "halma.journal.syncMillis",
+                "halma.matchmaking.maxWaitSeconds", "halma.bot.waitSeconds" }) {
+            if (intValue(key, 0) < 0) throw new IllegalArgumentException(key + " não pode ser negativo");
+        }
+    }
+
+    private String value(String property) {
+        String value = fromArgs.getProperty(property);
+        if (value == null) value = System.getProperty(property);
+        if (value == null) value = fromFile.getProperty(property);
+        return value;
+    }
+
+    private int intValue(String property, int fallback) {
+        String value = value(property);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(property + " tem de ser um número: " + value);
+        }
+    }
+
+    /** Copia a configuração para as propriedades de sistema, respeitando a prioridade descrita acima. */
+    void apply() {
+        for (String key : fromFile.stringPropertyNames()) {
+            if (System.getProperty(key) == null) System.setProperty(key, fromFile.getProperty(key));
+        }
+        for (String key : fromArgs.stringPropertyNames()) {
+            System.setProperty(key, fromArgs.getProperty(key));
+        }
+    }
+
+    int port() {
+        return intValue("halma.server.port", DEFAULT_PORT);
+    }
+
+    boolean gui() {
+        return gui;
+    }
+
+    boolean helpRequested() {
+        return help;
+    }
+}
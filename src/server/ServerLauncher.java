@@ -0,0 +1,38 @@
+package server;
+
+/**
+ * Ponto de entrada do servidor sem ecrã (contentores, servidores remotos). Não carrega o
+ * Swing/AWT a não ser que se peça {@code --gui}. Quando o socket do jogo está a escutar,
+ * escreve uma linha {@code HALMA READY port=<porta> mode=<modo>} na saída padrão; com
+ * {@code --status-port} o mesmo estado fica disponível em HTTP ({@code GET /status}).
+ *
+ * <pre>
+ *   java -cp bin server.ServerLauncher --port=12345 --mode=nio --status-port=8080
+ *   java -cp bin server.ServerLauncher --config=servidor.properties
+ * </pre>
+ */
+public final class ServerLauncher {
+    private ServerLauncher() {}
+
+    public static void main(String[] args) {
+        ServerConfig config;
+        try {
+            config = ServerConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(ServerConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (config.helpRequested()) {
+            System.out.println(ServerConfig.USAGE);
+            return;
+        }
+
+        // Antes de qualquer referência a HalmaServer: as suas constantes leem estas propriedades.
+        config.apply();
+        int port = config.port();
+        if (config.gui()) ServerStatusWindow.show(port);
+        HalmaServer.runServerLogic(port);
+    }
+}
@@ -0,0 +1,56 @@
+package server;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import java.awt.Font;
+
+/**
+ * Interface gráfica opcional do servidor: a caixa que pede a porta e a janela de estado.
+ * Fica numa classe à parte para que o servidor sem ecrã ({@link ServerLauncher}) nunca
+ * carregue o Swing/AWT.
+ */
+final class ServerStatusWindow {
+    private ServerStatusWindow() {}
+
+    /**
+     * Pede a porta ao utilizador. Termina o processo se ele cancelar ou se a porta for inválida.
+     */
+    static int askPort() {
+        // Adicionamos "12345" como o valor inicial da caixa de diálogo.
+        Object portStr = JOptionPane.showInputDialog(null, "Digite a porta para iniciar o servidor:", "Configuração do Servidor", JOptionPane.QUESTION_MESSAGE, null, null, "12345");
+
+        if (portStr == null) { // Se o usuário cancelar
+            System.exit(0);
+        }
+
+        try {
+            int port = Integer.parseInt(portStr.toString());
+            if (port <= 0 || port > 65535) {
+                throw new NumberFormatException();
+            }
+            return port;
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(null, "Porta inválida. O servidor não será iniciado.", "Erro", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+            return -1;
+        }
+    }
+
+    static void show(int port) {
+        SwingUtilities.invokeLater(() -> createAndShowGUI(port));
+    }
+
+    private static void createAndShowGUI(int port) {
+        JFrame frame = new JFrame("Status do Servidor Halma");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(400, 200);
+        JLabel statusLabel = new JLabel("Servidor online na porta " + port + ". Aguardando jogadores...", SwingConstants.CENTER);
+        statusLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        frame.add(statusLabel);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+}
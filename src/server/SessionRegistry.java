@@ -0,0 +1,78 @@
+package server;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessões vivas do servidor, desde o arranque até as estatísticas finais serem enviadas. A
+ * cada {@link #SWEEP_MILLIS} a roda de temporizadores pede a cada sessão que verifique se
+ * ainda tem todos os jogadores ligados: uma partida cujo jogador caiu sem a desconexão chegar
+ * à sessão é terminada por desistência, com as estatísticas finalizadas como em qualquer fim.
+ */
+final class SessionRegistry {
+    private static final long SWEEP_MILLIS = 5000;
+
+    private static final Set<GameSession> sessions = ConcurrentHashMap.newKeySet();
+    // Fichas de retoma válidas (ver GameSession.resume); cada lugar tem no máximo uma.
+    private static final Map<String, GameSession> byResumeToken = new ConcurrentHashMap<>();
+
+    static {
+        TimerWheel.shared().schedule(SessionRegistry::sweep, SWEEP_MILLIS);
+    }
+
+    private SessionRegistry() {}
+
+    static void register(GameSession session) {
+        sessions.add(session);
+    }
+
+    /** Chamado pela sessão depois de enviar os resultados; a partir daí ela só é alcançável pelo GC. */
+    static void unregister(GameSession session) {
+        sessions.remove(session);
+    }
+
+    static void registerToken(String token, GameSession session) {
+        byResumeToken.put(token, session);
+    }
+
+    static void unregisterToken(String token) {
+        byResumeToken.remove(token);
+    }
+
+    /** Sessão em que a ficha dá lugar, ou null se ela não existir ou já tiver sido substituída. */
+    static GameSession findByToken(String token) {
+        return byResumeToken.get(token);
+    }
+
+    /**
+     * Partida a assistir: com um número, a sessão com esse id; com outra coisa (por exemplo
+     * "any"), a mais recente. Devolve null se não houver nenhuma.
+     */
+    static GameSession findForWatching(String which) {
+        long wanted = -1;
+        try {
+            wanted = Long.parseLong(which);
+        } catch (NumberFormatException e) {
+            // qualquer partida serve
+        }
+        GameSession newest = null;
+        for (GameSession session : sessions) {
+            if (session.id() == wanted) return session;
+            if (wanted < 0 && (newest == null || session.id() > newest.id())) newest = session;
+        }
+        return newest;
+    }
+
+    static int size() {
+        return sessions.size();
+    }
+
+    private static void sweep() {
+        try {
+            for (GameSession session : sessions) session.reapIfAbandoned();
+        } finally {
+            TimerWheel.shared().schedule(SessionRegistry::sweep, SWEEP_MILLIS);
+        }
+    }
+}
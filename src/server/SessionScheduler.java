@@ -0,0 +1,80 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import shared.Log;
+
+/**
+ * Threads onde correm as sessões. Cada {@link GameSession} fica presa a um shard (atribuídos
+ * em rotação) e só essa thread mexe no estado da partida, por isso a sessão
+ * não precisa de locks e as threads de E/S só enfileiram mensagens. Há um shard por núcleo
+ * ({@code halma.server.sessionThreads}); com 0, cada mensagem é tratada na própria thread que
+ * a entregou, uma de cada vez por sessão (usado nos benchmarks).
+ */
+final class SessionScheduler {
+    private static final Log LOG = Log.get("session");
+    private static final SessionScheduler SHARED = new SessionScheduler(Integer.getInteger("halma.server.sessionThreads",
+            Runtime.getRuntime().availableProcessors()));
+
+    private final Shard[] shards;
+    private final AtomicLong nextSession = new AtomicLong();
+
+    private SessionScheduler(int threads) {
+        shards = new Shard[Math.max(0, threads)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard("halma-session-" + (i + 1));
+            shards[i].start();
+        }
+    }
+
+    static SessionScheduler shared() {
+        return SHARED;
+    }
+
+    /** Executor de uma nova sessão; sessões seguidas são distribuídas pelos shards em rotação. */
+    Executor nextShard() {
+        if (shards.length == 0) return Runnable::run;
+        return shards[(int) (nextSession.getAndIncrement() % shards.length)];
+    }
+
+    /** Uma thread com a fila das sessões que têm mensagens por tratar. */
+    private static final class Shard extends Thread implements Executor {
+        private final ConcurrentLinkedQueue<Runnable> ready = new ConcurrentLinkedQueue<>();
+        private volatile boolean sleeping = false;
+
+        Shard(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            ready.add(task);
+            if (sleeping) LockSupport.unpark(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = ready.poll();
+                if (task == null) {
+                    // Volta a ver a fila depois de se marcar como adormecido: quem enfileirou antes disso
+                    // já lá deixou a tarefa, quem enfileirar depois vê a marca e acorda-o.
+                    sleeping = true;
+                    if (ready.isEmpty()) LockSupport.park(this);
+                    sleeping = false;
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // Um erro numa sessão não pode parar as outras sessões deste shard.
+                    LOG.error("Erro inesperado numa sessão", e);
+                }
+            }
+        }
+    }
+}
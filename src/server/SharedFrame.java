@@ -0,0 +1,37 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+
+import shared.BinaryCodec;
+
+/**
+ * Uma mensagem para os espectadores, codificada uma só vez e partilhada por todas as ligações
+ * que a recebem: os bytes de cada codificação são criados no primeiro pedido e nunca mais são
+ * alterados, por isso podem ir para várias filas de envio (e várias threads) sem cópias.
+ */
+final class SharedFrame {
+    private final String message;
+    // Criados a pedido; se duas threads os criarem ao mesmo tempo, o resultado é igual.
+    private volatile byte[] text;
+    private volatile byte[] binary;
+
+    SharedFrame(String message) {
+        this.message = message;
+    }
+
+    String message() {
+        return message;
+    }
+
+    /** Bytes prontos a escrever no socket, na codificação da ligação. Não podem ser alterados. */
+    byte[] bytes(boolean binaryCodec) {
+        if (binaryCodec) {
+            byte[] encoded = binary;
+            if (encoded == null) binary = encoded = BinaryCodec.encode(message);
+            return encoded;
+        }
+        byte[] encoded = text;
+        if (encoded == null) text = encoded = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        return encoded;
+    }
+}
@@ -0,0 +1,68 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import shared.Log;
+
+/**
+ * Endpoint HTTP mínimo para sondas de prontidão e monitorização: {@code GET /status} devolve
+ * um JSON com o estado do servidor, com código 200 depois de o socket do jogo estar a escutar
+ * e 503 antes disso; {@code GET /metrics} devolve as {@link Metrics} no formato de texto do
+ * Prometheus. Usa o servidor HTTP do JDK (módulo {@code jdk.httpserver}).
+ */
+final class StatusEndpoint {
+    private static final Log LOG = Log.get("server");
+
+    private StatusEndpoint() {}
+
+    static void start(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/status", StatusEndpoint::handle);
+            server.createContext("/metrics", StatusEndpoint::handleMetrics);
+            server.start();
+            LOG.info("Estado disponível em http://localhost:", server.getAddress().getPort(), "/status");
+        } catch (IOException e) {
+            LOG.error("Não foi possível abrir o endpoint de estado na porta " + port, e);
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            respond(exchange, HalmaServer.isReady() ? 200 : 503, "application/json; charset=utf-8", HalmaServer.statusJson());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", Metrics.prometheus());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import shared.Log;
+
+/**
+ * Roda de temporizadores (hashed timing wheel) para os prazos do servidor: batimentos e
+ * inatividade das ligações, tempo de jogada e a recolha de sessões mortas. Uma só thread
+ * avança um tique a cada {@link #TICK_MILLIS}; cada prazo fica na casa do tique em que expira,
+ * com o número de voltas que ainda faltam, por isso agendar e cancelar custam O(1) e milhares
+ * de prazos não precisam de uma thread ou de uma tarefa agendada cada um.
+ *
+ * As tarefas correm na thread da roda e têm de ser curtas: normalmente só põem uma mensagem
+ * na caixa de correio de uma sessão ou fecham uma ligação.
+ */
+final class TimerWheel {
+    private static final Log LOG = Log.get("server");
+    static final long TICK_MILLIS = 100;
+    // Potência de 2; uma volta completa são WHEEL_SIZE * TICK_MILLIS (51,2 s).
+    private static final int WHEEL_SIZE = 512;
+    private static final TimerWheel SHARED = new TimerWheel("halma-timer");
+
+    private final Timeout[] buckets = new Timeout[WHEEL_SIZE]; // só usados pela thread da roda
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private long tick = 0;
+
+    private TimerWheel(String name) {
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /** Um prazo agendado. Cancelar só o marca; a roda descarta-o quando passar pela sua casa. */
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private long rounds;
+        private Timeout next;
+        private volatile boolean cancelled = false;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /** Corre {@code task} na thread da roda daqui a pelo menos {@code delayMillis}; pode ser chamado de qualquer thread. */
+    Timeout schedule(Runnable task, long delayMillis) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + Math.max(0, delayMillis);
+        Timeout timeout = new Timeout(task, (elapsed + TICK_MILLIS - 1) / TICK_MILLIS);
+        added.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            long wakeAt = startNanos + TimeUnit.MILLISECONDS.toNanos((tick + 1) * TICK_MILLIS);
+            long sleep;
+            while ((sleep = wakeAt - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            tick++;
+            transferAdded();
+            expire(buckets[(int) (tick & (WHEEL_SIZE - 1))]);
+        }
+    }
+
+    /** Passa os prazos novos para as suas casas. Um prazo já vencido vai para a casa atual. */
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long target = Math.max(timeout.deadlineTick, tick);
+            timeout.rounds = (target - tick) / WHEEL_SIZE;
+            int slot = (int) (target & (WHEEL_SIZE - 1));
+            timeout.next = buckets[slot];
+            buckets[slot] = timeout;
+        }
+    }
+
+    /** Corre os prazos da casa que já não têm voltas por dar e tira da lista também os cancelados. */
+    private void expire(Timeout head) {
+        int slot = (int) (tick & (WHEEL_SIZE - 1));
+        Timeout previous = null;
+        for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+            boolean due = !timeout.cancelled && timeout.rounds-- <= 0;
+            if (!due && !timeout.cancelled) {
+                previous = timeout;
+                continue;
+            }
+            if (previous == null) buckets[slot] = timeout.next;
+            else previous.next = timeout.next;
+            if (!due) continue;
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                LOG.error("Erro num temporizador", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package shared;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Codificação binária compacta das mensagens de {@link Protocol}, negociada no SET_NAME
+ * ({@code CODEC=binary}). O resto do código continua a trabalhar com as mensagens de texto:
+ * a conversão é feita só na ligação, por isso os dois formatos convivem no mesmo servidor.
+ *
+ * Formato de uma trama: {@code varint(tamanho) opcode campos...}. Cada comando tem um
+ * esquema fixo de campos: coordenadas e números pequenos num byte, contagens em varint e
+ * textos (nomes, chat) com o tamanho à frente. Uma mensagem que não caiba no esquema do seu
+ * comando (ou um comando sem esquema) segue como texto com o opcode {@link #RAW}, por isso
+ * a conversão é sempre exata: {@code decode(encode(m)).equals(m)}.
+ */
+public final class BinaryCodec {
+    /** Valor da opção {@link Protocol#OPTION_CODEC} que pede esta codificação. */
+    public static final String NAME = "binary";
+    /** Maior trama aceite ao ler (o histórico de chat das estatísticas pode ser longo). */
+    public static final int MAX_FRAME = 1 << 20;
+
+    private static final int RAW = 0;
+
+    // Tipos de campo dos esquemas.
+    private static final byte U8 = 1;          // inteiro 0..255 num byte (coordenadas, ids)
+    private static final byte U8_LIST = 2;     // resto da mensagem: contagem + inteiros 0..255
+    private static final byte VARINT_LIST = 3; // resto da mensagem: contagem + inteiros em varint
+    private static final byte COORDS = 4;      // "l,c;l,c;..." como contagem + pares de bytes
+    private static final byte TURN = 5;        // YOUR_TURN / OPPONENT_TURN num byte
+    private static final byte TEXT = 6;        // resto da mensagem em UTF-8; tamanho 0 = sem campo
+    private static final byte VARINT = 7;      // inteiro não negativo em varint
+    private static final byte CELLS = 8;       // dígitos 0..9, um por casa, dois por byte
+
+    private static final String[] COMMANDS = new String[64];
+    private static final byte[][] SCHEMAS = new byte[64][];
+    private static final Map<String, Integer> OPCODES = new HashMap<>();
+
+    static {
+        int op = 1;
+        // Cliente -> servidor
+        define(op++, Protocol.MOVE, U8, U8, U8, U8);
+        define(op++, Protocol.MOVE_PATH, U8_LIST);
+        define(op++, Protocol.CHAT, TEXT);
+        define(op++, Protocol.FORFEIT);
+        define(op++, Protocol.END_CHAIN_JUMP);
+        define(op++, Protocol.GET_VALID_MOVES, U8, U8);
+        // Servidor -> cliente
+        define(op++, Protocol.WELCOME, U8);
+        define(op++, Protocol.BOARD_SETUP, TEXT);
+        define(op++, Protocol.OPPONENT_FOUND, TEXT);
+        define(op++, Protocol.GAME_START);
+        define(op++, Protocol.VALID_MOVE, U8, U8, U8, U8);
+        define(op++, Protocol.JUMP_MOVE, U8, U8, U8, U8);
+        define(op++, Protocol.OPPONENT_MOVED, U8, U8, U8, U8);
+        define(op++, Protocol.SET_TURN, TURN);
+        define(op++, Protocol.CHAT_MESSAGE, TEXT);
+        define(op++, Protocol.VICTORY);
+        define(op++, Protocol.DEFEAT, TEXT);
+        define(op++, Protocol.OPPONENT_FORFEIT);
+        define(op++, Protocol.CHAIN_JUMP_OFFER, U8, U8);
+        define(op++, Protocol.INFO, TEXT);
+        define(op++, Protocol.ERROR, TEXT);
+        define(op++, Protocol.VALID_MOVES_LIST, COORDS);
+        define(op++, Protocol.UPDATE_SCORE, VARINT_LIST);
+        define(op++, Protocol.GAME_OVER_STATS, TEXT);
+        define(op++, Protocol.RESUME_TOKEN, TEXT);
+        define(op++, Protocol.SNAPSHOT, U8, VARINT, CELLS, VARINT_LIST);
+        define(op++, Protocol.GAME_ENDED, TEXT);
+        define(op++, Protocol.CHAT_LOG, TEXT);
+        // Nos dois sentidos
+        define(op++, Protocol.PING);
+        define(op++, Protocol.PONG);
+    }
+
+    private static void define(int opcode, String command, byte... fields) {
+        COMMANDS[opcode] = command;
+        SCHEMAS[opcode] = fields;
+        OPCODES.put(command, opcode);
+    }
+
+    private BinaryCodec() {}
+
+    // --- Codificação ---
+
+    /** Converte uma mensagem de texto numa trama completa (com o tamanho à frente). */
+    public static byte[] encode(String message) {
+        Buffer payload = new Buffer(message.length() + 8);
+        int separator = message.indexOf(':');
+        String command = separator < 0 ? message : message.substring(0, separator);
+        Integer opcode = OPCODES.get(command);
+        if (opcode == null || !encodeFields(message, separator, SCHEMAS[opcode], payload.opcode(opcode))) {
+            payload.reset().opcode(RAW).text(message);
+        }
+
+        Buffer frame = new Buffer(payload.size + 3);
+        frame.varint(payload.size);
+        frame.bytes(payload.data, payload.size);
+        return frame.toArray();
+    }
+
+    private static boolean encodeFields(String message, int separator, byte[] schema, Buffer out) {
+        if (schema.length == 0) return separator < 0;
+        int position = separator < 0 ? -1 : separator + 1;
+        for (int f = 0; f < schema.length; f++) {
+            boolean last = f == schema.length - 1;
+            switch (schema[f]) {
+                case U8:
+                case VARINT: {
+                    if (position < 0) return false;
+                    int end = last ? message.length() : message.indexOf(':', position);
+                    if (end < 0) return false;
+                    int value = parseCanonical(message, position, end, schema[f] == U8 ? 255 : Integer.MAX_VALUE);
+                    if (value < 0) return false;
+                    if (schema[f] == U8) out.u8(value);
+                    else out.varint(value);
+                    position = last ? -1 : end + 1;
+                    break;
+                }
+                case CELLS: {
+                    if (position < 0) return false;
+                    int end = last ? message.length() : message.indexOf(':', position);
+                    if (end < 0) return false;
+                    out.varint(end - position);
+                    for (int i = position; i < end; i += 2) {
+                        int high = message.charAt(i) - '0';
+                        int low = i + 1 < end ? message.charAt(i + 1) - '0' : 0;
+                        if (high < 0 || high > 9 || low < 0 || low > 9) return false;
+                        out.u8(high << 4 | low);
+                    }
+                    position = last ? -1 : end + 1;
+                    break;
+                }
+                case TURN: {
+                    if (position < 0 || !last) return false;
+                    String turn = message.substring(position);
+                    if ("YOUR_TURN".equals(turn)) out.u8(1);
+                    else if ("OPPONENT_TURN".equals(turn)) out.u8(0);
+                    else return false;
+                    break;
+                }
+                case TEXT:
+                    if (position < 0) out.varint(0);
+                    else out.varint(utf8Length(message, position) + 1).text(message.substring(position));
+                    break;
+                case U8_LIST:
+                case VARINT_LIST: {
+                    int max = schema[f] == U8_LIST ? 255 : Integer.MAX_VALUE;
+                    int count = 0;
+                    int countAt = out.size;
+                    out.varint(0);
+                    while (position >= 0) {
+                        int end = message.indexOf(':', position);
+                        int value = parseCanonical(message, position, end < 0 ? message.length() : end, max);
+                        if (value < 0) return false;
+                        if (max == 255) out.u8(value);
+                        else out.varint(value);
+                        count++;
+                        position = end < 0 ? -1 : end + 1;
+                    }
+                    if (count > 127) return false; // a contagem ocupa um só byte
+                    out.data[countAt] = (byte) count;
+                    break;
+                }
+                case COORDS: {
+                    if (position < 0) return false;
+                    int count = 0;
+                    int countAt = out.size;
+                    out.varint(0);
+                    int length = message.length();
+                    while (position < length) {
+                        int comma = message.indexOf(',', position);
+                        if (comma < 0) return false;
+                        int end = message.indexOf(';', comma);
+                        if (end < 0) end = length;
+                        int row = parseCanonical(message, position, comma, 255);
+                        int col = parseCanonical(message, comma + 1, end, 255);
+                        if (row < 0 || col < 0) return false;
+                        out.u8(row).u8(col);
+                        count++;
+                        position = end + 1;
+                        if (end < length && position == length) return false; // ';' no fim
+                    }
+                    if (count > 127) return false;
+                    out.data[countAt] = (byte) count;
+                    break;
+                }
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /** Inteiro não negativo sem zeros à esquerda em {@code [from, to)}, ou -1 se não for canónico ou passar de {@code max}. */
+    private static int parseCanonical(String text, int from, int to, int max) {
+        if (from >= to || to - from > 10 || (text.charAt(from) == '0' && to - from > 1)) return -1;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value > max ? -1 : (int) value;
+    }
+
+    private static int utf8Length(String text, int from) {
+        int length = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) length++;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else length += 3;
+        }
+        return length;
+    }
+
+    // --- Descodificação ---
+
+    /**
+     * Tenta extrair uma trama de {@code bytes[start, limit)}. Devolve quantos bytes a trama ocupa
+     * (e guarda a mensagem em {@code message[0]}), 0 se a trama ainda não chegou inteira, ou -1
+     * se o tamanho anunciado passar de {@code maxFrame}.
+     */
+    public static int tryDecode(byte[] bytes, int start, int limit, int maxFrame, String[] message) {
+        int length = 0;
+        int shift = 0;
+        int position = start;
+        while (true) {
+            if (position >= limit) return 0;
+            int b = bytes[position++] & 0xFF;
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+            if (shift > 28) return -1;
+        }
+        if (length <= 0 || length > maxFrame) return -1;
+        if (limit - position < length) return 0;
+        message[0] = decodePayload(bytes, position, length);
+        return position + length - start;
+    }
+
+    /** Lê uma trama de um fluxo bloqueante; devolve null no fim do fluxo. */
+    public static String readFrame(InputStream in) throws IOException {
+        int length = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) return null;
+                throw new EOFException();
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+            if (shift > 28) throw new IOException("Tamanho de trama inválido");
+        }
+        if (length <= 0 || length > MAX_FRAME) throw new IOException("Tamanho de trama inválido: " + length);
+        byte[] payload = in.readNBytes(length);
+        if (payload.length < length) throw new EOFException();
+        return decodePayload(payload, 0, length);
+    }
+
+    public static void writeFrame(OutputStream out, String message) throws IOException {
+        out.write(encode(message));
+    }
+
+    private static String decodePayload(byte[] bytes, int start, int length) {
+        Reader in = new Reader(bytes, start, start + length);
+        int opcode = in.u8();
+        if (opcode == RAW || opcode >= COMMANDS.length || COMMANDS[opcode] == null) {
+            return opcode == RAW ? in.text() : "";
+        }
+
+        StringBuilder message = new StringBuilder(COMMANDS[opcode]);
+        byte[] schema = SCHEMAS[opcode];
+        for (int f = 0; f < schema.length; f++) {
+            switch (schema[f]) {
+                case U8:
+                    message.append(':').append(in.u8());
+                    break;
+                case VARINT:
+                    message.append(':').append(in.varint());
+                    break;
+                case CELLS: {
+                    int count = in.varint();
+                    message.append(':');
+                    for (int i = 0; i < count; i += 2) {
+                        int packed = in.u8();
+                        message.append((char) ('0' + (packed >> 4)));
+                        if (i + 1 < count) message.append((char) ('0' + (packed & 0x0F)));
+                    }
+                    break;
+                }
+                case TURN:
+                    message.append(':').append(in.u8() == 1 ? "YOUR_TURN" : "OPPONENT_TURN");
+                    break;
+                case TEXT: {
+                    int size = in.varint();
+                    if (size > 0) message.append(':').append(in.utf8(size - 1));
+                    break;
+                }
+                case U8_LIST:
+                case VARINT_LIST: {
+                    int count = in.varint();
+                    for (int i = 0; i < count; i++) {
+                        message.append(':').append(schema[f] == U8_LIST ? in.u8() : in.varint());
+                    }
+                    break;
+                }
+                case COORDS: {
+                    int count = in.varint();
+                    message.append(':');
+                    for (int i = 0; i < count; i++) {
+                        if (i > 0) message.append(';');
+                        message.append(in.u8()).append(',').append(in.u8());
+                    }
+                    break;
+                }
+            }
+        }
+        return message.toString();
+    }
+
+    /**
+     * Lê uma linha de texto terminada em '\n' byte a byte, sem ler nada além dela. Usado na
+     * negociação, em que a linha seguinte do mesmo fluxo pode já vir em binário.
+     */
+    public static String readTextLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (line.size() >= MAX_FRAME) throw new IOException("Linha demasiado longa");
+            line.write(b);
+        }
+        if (b < 0 && line.size() == 0) return null;
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    /** Buffer de escrita que cresce conforme necessário. */
+    private static final class Buffer {
+        byte[] data;
+        int size;
+
+        Buffer(int capacity) {
+            data = new byte[Math.max(16, capacity)];
+        }
+
+        Buffer reset() {
+            size = 0;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) data = java.util.Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+        }
+
+        Buffer opcode(int opcode) {
+            return u8(opcode);
+        }
+
+        Buffer u8(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+            return this;
+        }
+
+        Buffer varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+            return this;
+        }
+
+        Buffer text(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            return bytes(encoded, encoded.length);
+        }
+
+        Buffer bytes(byte[] source, int length) {
+            ensure(length);
+            System.arraycopy(source, 0, data, size, length);
+            size += length;
+            return this;
+        }
+
+        byte[] toArray() {
+            return size == data.length ? data : java.util.Arrays.copyOf(data, size);
+        }
+    }
+
+    /** Leitura sequencial do conteúdo de uma trama. */
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private final int limit;
+
+        Reader(byte[] data, int start, int limit) {
+            this.data = data;
+            this.position = start;
+            this.limit = limit;
+        }
+
+        int u8() {
+            return position < limit ? data[position++] & 0xFF : 0;
+        }
+
+        int varint() {
+            int value = 0;
+            int shift = 0;
+            while (position < limit && shift <= 28) {
+                int b = data[position++] & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+                shift += 7;
+            }
+            return value;
+        }
+
+        String utf8(int length) {
+            int end = Math.min(limit, position + length);
+            String value = new String(data, position, end - position, StandardCharsets.UTF_8);
+            position = end;
+            return value;
+        }
+
+        String text() {
+            return utf8(limit - position);
+        }
+    }
+}
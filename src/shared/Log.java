@@ -0,0 +1,206 @@
+package shared;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registo assíncrono com níveis e uma categoria por instância ({@code Log.get("net")}).
+ *
+ * Quem regista não escreve nem formata nada: as partes da mensagem (até quatro, concatenadas
+ * só na escrita) são colocadas num buffer circular sem locks, e uma thread de fundo esvazia-o
+ * para {@code System.out} (ou {@code System.err} a partir de WARN). Se o buffer estiver cheio
+ * a mensagem é descartada e contada, em vez de travar quem regista. Um nível desligado custa
+ * só uma leitura volátil, por isso os registos por mensagem (TRACE) podem ficar no código.
+ *
+ * Configuração por propriedades de sistema: {@code halma.log.level} (padrão INFO) para todas
+ * as categorias e {@code halma.log.<categoria>} para uma só, ex.: {@code -Dhalma.log.protocol=TRACE}.
+ */
+public final class Log {
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Level DEFAULT_LEVEL = parseLevel(System.getProperty("halma.log.level"), Level.INFO);
+    private static final ConcurrentHashMap<String, Log> categories = new ConcurrentHashMap<>();
+
+    private final String category;
+    private volatile int threshold;
+
+    private Log(String category) {
+        this.category = category;
+        this.threshold = parseLevel(System.getProperty("halma.log." + category), DEFAULT_LEVEL).ordinal();
+    }
+
+    /** Registo da categoria pedida; a mesma instância é devolvida a todos os que a pedirem. */
+    public static Log get(String category) {
+        return categories.computeIfAbsent(category, Log::new);
+    }
+
+    /** Muda o nível de uma categoria em tempo de execução. */
+    public static void setLevel(String category, Level level) {
+        get(category).threshold = level.ordinal();
+    }
+
+    /** Quantas mensagens foram descartadas por o buffer estar cheio desde o arranque. */
+    public static long droppedCount() {
+        return dropped.get();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isTraceEnabled() { return Level.TRACE.ordinal() >= threshold; }
+
+    public void trace(Object a) { if (isTraceEnabled()) enqueue(Level.TRACE, a, null, null, null, null); }
+    public void trace(Object a, Object b) { if (isTraceEnabled()) enqueue(Level.TRACE, a, b, null, null, null); }
+    public void trace(Object a, Object b, Object c) { if (isTraceEnabled()) enqueue(Level.TRACE, a, b, c, null, null); }
+    public void trace(Object a, Object b, Object c, Object d) { if (isTraceEnabled()) enqueue(Level.TRACE, a, b, c, d, null); }
+
+    public void debug(Object a) { log(Level.DEBUG, a, null, null, null, null); }
+    public void debug(Object a, Object b) { log(Level.DEBUG, a, b, null, null, null); }
+    public void debug(Object a, Object b, Object c) { log(Level.DEBUG, a, b, c, null, null); }
+
+    public void info(Object a) { log(Level.INFO, a, null, null, null, null); }
+    public void info(Object a, Object b) { log(Level.INFO, a, b, null, null, null); }
+    public void info(Object a, Object b, Object c) { log(Level.INFO, a, b, c, null, null); }
+    public void info(Object a, Object b, Object c, Object d) { log(Level.INFO, a, b, c, d, null); }
+
+    public void warn(Object a) { log(Level.WARN, a, null, null, null, null); }
+    public void warn(Object a, Object b) { log(Level.WARN, a, b, null, null, null); }
+    public void warn(Object a, Object b, Object c) { log(Level.WARN, a, b, c, null, null); }
+    public void warn(Object a, Throwable error) { log(Level.WARN, a, null, null, null, error); }
+
+    public void error(Object a) { log(Level.ERROR, a, null, null, null, null); }
+    public void error(Object a, Object b) { log(Level.ERROR, a, b, null, null, null); }
+    public void error(Object a, Throwable error) { log(Level.ERROR, a, null, null, null, error); }
+
+    private void log(Level level, Object a, Object b, Object c, Object d, Throwable error) {
+        if (level.ordinal() >= threshold) enqueue(level, a, b, c, d, error);
+    }
+
+    // --- Buffer circular: vários produtores, um consumidor (a thread de escrita) ---
+
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(64, Integer.getInteger("halma.log.bufferSize", 8192)));
+    private static final int MASK = CAPACITY - 1;
+    private static final Entry[] entries = new Entry[CAPACITY];
+    // head: próxima sequência a reservar; tail: próxima a consumir.
+    private static final AtomicLong head = new AtomicLong();
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    // A thread de escrita dorme sem prazo quando o buffer está vazio; quem publica com ela a dormir acorda-a.
+    private static final Thread writer = new Thread(Log::drainForever, "halma-log-writer");
+    private static volatile boolean writerParked = false;
+
+    /** Uma posição do buffer; {@code sequence} só é escrito depois dos outros campos, e publica-os. */
+    private static final class Entry {
+        volatile long sequence = -1;
+        long timeMillis;
+        Level level;
+        String category;
+        Object a, b, c, d;
+        Throwable error;
+    }
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) entries[i] = new Entry();
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "halma-log-flush"));
+    }
+
+    private void enqueue(Level level, Object a, Object b, Object c, Object d, Throwable error) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        Entry entry = entries[(int) sequence & MASK];
+        entry.timeMillis = System.currentTimeMillis();
+        entry.level = level;
+        entry.category = category;
+        entry.a = a;
+        entry.b = b;
+        entry.c = c;
+        entry.d = d;
+        entry.error = error;
+        entry.sequence = sequence;
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    private static void drainForever() {
+        while (true) {
+            if (drain() > 0) continue;
+            writerParked = true;
+            // Volta a ver depois de anunciar que vai dormir: quem publicou antes disso não viu
+            // writerParked e não acordou ninguém, mas a sua entrada já está visível aqui.
+            if (drain() == 0) LockSupport.park();
+            writerParked = false;
+        }
+    }
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final StringBuilder line = new StringBuilder(256);
+    private static long reportedDrops;
+
+    /** Escreve todas as entradas publicadas; devolve quantas foram escritas. */
+    private static synchronized int drain() {
+        int written = 0;
+        long next = tail.get();
+        boolean wroteOut = false;
+        boolean wroteErr = false;
+        while (true) {
+            Entry entry = entries[(int) next & MASK];
+            if (entry.sequence != next) break;
+
+            line.setLength(0);
+            line.append(LocalTime.ofNanoOfDay(localNanosOfDay(entry.timeMillis)).format(TIME))
+                .append(' ').append(entry.level).append(" [").append(entry.category).append("] ")
+                .append(entry.a);
+            if (entry.b != null) line.append(entry.b);
+            if (entry.c != null) line.append(entry.c);
+            if (entry.d != null) line.append(entry.d);
+            boolean toErr = entry.level.ordinal() >= Level.WARN.ordinal();
+            PrintStream stream = toErr ? System.err : System.out;
+            stream.println(line);
+            if (entry.error != null) entry.error.printStackTrace(stream);
+            wroteErr |= toErr;
+            wroteOut |= !toErr;
+
+            entry.a = entry.b = entry.c = entry.d = null;
+            entry.error = null;
+            tail.set(++next);
+            written++;
+        }
+
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            System.err.println("[log] " + (drops - reportedDrops) + " mensagens descartadas (buffer cheio).");
+            reportedDrops = drops;
+            wroteErr = true;
+        }
+        if (wroteOut) System.out.flush();
+        if (wroteErr) System.err.flush();
+        return written;
+    }
+
+    private static long localNanosOfDay(long timeMillis) {
+        long offset = java.util.TimeZone.getDefault().getOffset(timeMillis);
+        return Math.floorMod(timeMillis + offset, 86_400_000L) * 1_000_000L;
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null) return fallback;
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
@@ -2,6 +2,16 @@ package shared;
 
 public class Protocol {
     public static final String SEPARATOR = ":";
+    // Opções opcionais no fim do SET_NAME, no formato CHAVE=valor (ex.: SET_NAME:Ana:MODE=16x16)
+    public static final String OPTION_MODE = "MODE";
+    // Codificação pedida pelo cliente (CODEC=binary, ver BinaryCodec); sem ela a ligação fica em texto.
+    public static final String OPTION_CODEC = "CODEC";
+    // Rating do jogador (RATING=1500), usado pela regra de pareamento "rating" do servidor.
+    public static final String OPTION_RATING = "RATING";
+    // Ficha recebida em RESUME_TOKEN (RESUME=<ficha>): volta ao lugar numa partida em curso em vez de entrar na fila.
+    public static final String OPTION_RESUME = "RESUME";
+    // Entra como espectador em vez de jogar: WATCH=<id da partida> ou WATCH=any para a mais recente.
+    public static final String OPTION_WATCH = "WATCH";
 
     // Comandos do Cliente para o Servidor
     public static final String MOVE = "MOVE";
@@ -10,6 +20,7 @@ public class Protocol {
     public static final String END_CHAIN_JUMP = "END_CHAIN_JUMP";
     public static final String SET_NAME = "SET_NAME";
     public static final String GET_VALID_MOVES = "GET_VALID_MOVES";
+    public static final String MOVE_PATH = "MOVE_PATH"; // Caminho completo de saltos: MOVE_PATH:l0:c0:l1:c1:...
 
     // Comandos do Servidor para o Cliente
     public static final String GAME_OVER_STATS = "GAME_OVER_STATS";
@@ -29,4 +40,19 @@ public class Protocol {
     public static final String ERROR = "ERROR";
     public static final String VALID_MOVES_LIST = "VALID_MOVES_LIST";
     public static final String UPDATE_SCORE = "UPDATE_SCORE"; // <-- ADICIONADO
+    public static final String BOARD_SETUP = "BOARD_SETUP"; // Geometria da partida: BOARD_SETUP:<id da Geometry>
+    public static final String CODEC = "CODEC"; // Confirmação em texto (CODEC:binary); a seguir os dois lados passam a tramas binárias
+    public static final String RESUME_TOKEN = "RESUME_TOKEN"; // Ficha para retomar este lugar depois de uma queda: RESUME_TOKEN:<ficha>
+    // Estado completo ao retomar: SNAPSHOT:<jogador da vez>:<casa da cadeia de saltos + 1, ou 0>:<dono de cada casa>:<jogadas1>:...
+    // O dono de cada casa é um dígito (0 = vazia), por ordem de índice (linha * tamanho + coluna).
+    public static final String SNAPSHOT = "SNAPSHOT";
+    public static final String GAME_ENDED = "GAME_ENDED"; // Só para espectadores: GAME_ENDED:<resultado>
+    // Histórico da conversa no fim da partida, uma linha por mensagem, logo depois do GAME_OVER_STATS: CHAT_LOG:<linha>
+    public static final String CHAT_LOG = "CHAT_LOG";
+
+    // Nos dois sentidos: quem recebe um PING responde logo com PONG. O servidor envia PING a uma
+    // ligação calada; se o cliente já enviou PING ou PONG alguma vez, desliga-a quando nada chega
+    // dentro do prazo de inatividade. As outras ligações só caem pelo keepalive do TCP.
+    public static final String PING = "PING";
+    public static final String PONG = "PONG";
 }
\ No newline at end of file